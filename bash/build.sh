@@ -7,6 +7,7 @@
 
 readonly ASSET_DIR="/tmp/drportal"
 readonly S3_DIR="${ASSET_DIR}/s3"
+readonly BUNDLE_DIR="${ASSET_DIR}/bundle"
 readonly DRP="BCSDisasterRecoveryPortal"
 readonly C="Common"
 readonly CE="CloudEndure"
@@ -15,6 +16,10 @@ readonly FN="Formation"
 readonly L="Lambda"
 readonly dev="development"
 
+# jars moved out of every lambda bundle into the shared layers of DRPortal-Common-Layer
+readonly SDK_JARS="lib/aws-java-sdk-* lib/jmespath-java-* lib/ion-java-* lib/httpclient-* lib/httpcore-* lib/commons-logging-* lib/commons-codec-* lib/joda-time-*"
+readonly RUNTIME_JARS="lib/jackson-* lib/dagger-* lib/javax.inject-* lib/slf4j-* lib/log4j-* lib/aws-lambda-java-*"
+
 declare WS="/tmp/ws"
 declare location="tmp"
 declare action="all"
@@ -129,6 +134,77 @@ function copy_common() {
   run "cp ${WS}/drpl/src/${DRP}${L}/build/${DRP}${L}-1.0-lambda.zip ${S3_DIR}/lambda/common.zip"
 }
 
+# Keeps every bundle as built, so that layers are built from complete bundles even if only one is copied again.
+# A slimmed bundle has the time of its kept copy, so only a newly copied bundle is newer.
+function keep_bundles() {
+  local zip
+  local kept
+
+  for zip in $(find ${S3_DIR}/lambda -name "*.zip" -not -path "*/layer/*"); do
+    kept="${BUNDLE_DIR}/${zip#${S3_DIR}/lambda/}"
+    if [ ! -f ${kept} ] || [ ${zip} -nt ${kept} ]; then
+      mkdir -p $(dirname ${kept})
+      cp -p ${zip} ${kept}
+    fi
+  done
+}
+
+# Extracts the shared jars of all bundles into a layer zip, laid out as java/lib.
+function build_layer() {
+  local -r name=$1
+  local -r jars=$2
+  local -r dir="${ASSET_DIR}/layer/${name}"
+  local zip
+  local status
+  local duplicates
+
+  echo "Layer ${name}"
+  rm -rf ${dir} && mkdir -p ${dir}/java/lib
+  for zip in $(find ${BUNDLE_DIR} -name "*.zip"); do
+    unzip -j -o ${zip} ${jars} -d ${dir}/java/lib >$(file_log 1) 2>&1
+    status=$?
+    # 11 means the bundle has none of the jars
+    if ((status != 0 && status != 11)); then
+      cat $(file_log 1)
+      exit ${status}
+    fi
+  done
+
+  # two versions of one jar on the class path would load either of them
+  duplicates=$(ls ${dir}/java/lib | sed -E 's/-[0-9][^/]*\.jar$//' | sort | uniq -d)
+  if [ -n "${duplicates}" ]; then
+    echo "Bundles disagree on the versions of: ${duplicates}"
+    exit 1
+  fi
+
+  rm -f ${S3_DIR}/lambda/layer/${name}.zip
+  (cd ${dir} && zip -r -q ${S3_DIR}/lambda/layer/${name}.zip java)
+}
+
+# Copies each kept bundle without the jars that went into the layers, so that it only carries its handler code.
+function slim_bundles() {
+  local -r layered=$(find ${ASSET_DIR}/layer -name "*.jar" -exec basename {} \;)
+  local kept
+  local zip
+  local entries
+
+  for kept in $(find ${BUNDLE_DIR} -name "*.zip"); do
+    zip="${S3_DIR}/lambda/${kept#${BUNDLE_DIR}/}"
+    echo "Slim ${zip#${S3_DIR}/lambda/}"
+    cp ${kept} ${zip}
+    entries=$(zipinfo -1 ${zip} | grep -E "^lib/[^/]+\.jar$" | grep -F -x -f <(echo "${layered}" | sed 's|^|lib/|'))
+    [ -n "${entries}" ] && run "zip -d -q ${zip} ${entries}"
+    touch -r ${kept} ${zip}
+  done
+}
+
+function build_layers() {
+  keep_bundles
+  build_layer sdk "${SDK_JARS}"
+  build_layer runtime "${RUNTIME_JARS}"
+  slim_bundles
+}
+
 function pull_dbdump_mysql() {
   pull drpl ${DRP}${L}/${dev} ${DRP}MySqlDump
 }
@@ -196,6 +272,9 @@ function build_client() {
 
 function copy_client() {
   run "cp ${WS}/drpc2/src/${DRP}Client/build/webapps/ROOT.war ${S3_DIR}/web/ROOT.war"
+  # the static site serves the same files without Tomcat.
+  run "rm -rf ${S3_DIR}/web/client"
+  run "unzip -q ${S3_DIR}/web/ROOT.war -d ${S3_DIR}/web/client -x WEB-INF/* META-INF/*"
 }
 
 function pull_server() {
@@ -249,6 +328,7 @@ function build_main() {
   mkdir -p ${ASSET_DIR}/log
   mkdir -p ${S3_DIR}/lambda
   mkdir -p ${S3_DIR}/lambda/dbdump
+  mkdir -p ${S3_DIR}/lambda/layer
   mkdir -p ${S3_DIR}/template
   mkdir -p ${S3_DIR}/web
   mkdir -p $WS
@@ -306,6 +386,8 @@ function build_main() {
     [[ $action == "all" || $action == "build" ]] && build_server
     [[ $action == "all" || $action == "copy" ]] && copy_server
   fi
+
+  [[ $action == "all" || $action == "copy" ]] && build_layers
 }
 
 while getopts ":l:a:c:i:" option; do
@@ -26,16 +26,16 @@ function usage() {
   echo "            [-p false|true]"
   echo "            [-i all|none|s3|dbdump.mysql|dynamo]"
   echo "            [-s all|vpc|ce|cem|s3|dbdump.mysql|dbreplica.oracle|dynamo]"
-  echo "            [-c all|vpc|bucket|db"
-  echo "               |common.f|common.api|common.deploy"
-  echo "               |vpc.f|vpc.steps|vpc.deploy"
+  echo "            [-c all|vpc|bucket|db|dax"
+  echo "               |common.f|common.layer|common.api|common.deploy"
+  echo "               |vpc.f|vpc.steps|vpc.deploy|vpc.watch"
   echo "               |ce.base"
   echo "               |ce.f|ce.steps|ce.ssm|ce.deploy"
   echo "               |s3.f|s3.ecs|s3.steps|s3.deploy"
   echo "               |dynamo.f|dynamo.ecs|dynamo.steps|dynamo.deploy"
   echo "               |dbdump.mysql.f|dbdump.mysql.ecs|dbdump.mysql.steps"
   echo "               |dbreplica.oracle.f|dbreplica.oracle.steps"
-  echo "               |site|client|server|route] "
+  echo "               |archive|site|client|server|route] "
   echo " -a the action to do, default deploy. update is to update lambda codes"
   echo " -p whether to copy assets to bucket or not, default true"
   echo " -i which image to publish, s3 or dynamo or all, default all"
@@ -56,6 +56,17 @@ function check_env() {
   fi
 
   mkdir -p ${ASSET_DIR}/log
+
+  # layers are published from keys of their content, so that a rebuilt layer zip becomes a new layer version.
+  if [ -f ${S3_DIR}/lambda/layer/sdk.zip ] && [ -f ${S3_DIR}/lambda/layer/runtime.zip ]; then
+    export LAYER_SDK_HASH=$(layer_hash sdk)
+    export LAYER_RUNTIME_HASH=$(layer_hash runtime)
+  fi
+}
+
+function layer_hash() {
+  local -r name=$1
+  sha256sum ${S3_DIR}/lambda/layer/${name}.zip | cut -c 1-16
 }
 
 function datetime_now() {
@@ -112,6 +123,16 @@ function copy_lambda_common() {
   run "aws s3 cp ${S3_DIR}/lambda/common.zip s3://$(bucket)/lambda/common.zip --profile ${PROFILE}"
 }
 
+# the unhashed keys serve deployments from a machine without the layer zips, see check_env.
+function copy_lambda_layer() {
+  run "aws s3 cp ${S3_DIR}/lambda/layer/sdk.zip     s3://$(bucket)/lambda/layer/sdk.zip     --profile ${PROFILE}"
+  run "aws s3 cp ${S3_DIR}/lambda/layer/runtime.zip s3://$(bucket)/lambda/layer/runtime.zip --profile ${PROFILE}"
+  run "aws s3 cp ${S3_DIR}/lambda/layer/sdk.zip
+    s3://$(bucket)/lambda/layer/sdk-${LAYER_SDK_HASH}.zip         --profile ${PROFILE}"
+  run "aws s3 cp ${S3_DIR}/lambda/layer/runtime.zip
+    s3://$(bucket)/lambda/layer/runtime-${LAYER_RUNTIME_HASH}.zip --profile ${PROFILE}"
+}
+
 function copy_lambda_vpc() {
   run "aws s3 cp ${S3_DIR}/lambda/vpc.zip    s3://$(bucket)/lambda/vpc.zip    --profile ${PROFILE}"
 }
@@ -132,8 +153,33 @@ function copy_lambda_dbreplica_oracle() {
   run "aws s3 cp ${S3_DIR}/lambda/dbreplica/oracle.zip s3://$(bucket)/lambda/dbreplica/oracle.zip --profile ${PROFILE}"
 }
 
+function vpc_watch() {
+  [[ ${VPC_WATCH} == "true" && ${VPC_RESOURCE_FAN_OUT} == "true" ]]
+}
+
+function archive() {
+  [[ ${ARCHIVE} == "true" ]]
+}
+
+function static_site() {
+  [[ ${SITE_MODE} == "static" && ${REGION} != cn-* ]]
+}
+
+function client_version() {
+  echo ${CLIENT_VERSION:-latest}
+}
+
 function copy_client() {
-  run "aws s3 cp ${S3_DIR}/web/ROOT.war s3://$(bucket)/web/ROOT.war --profile ${PROFILE}"
+  if static_site; then
+    # CloudFront cannot decrypt the default KMS encryption of the bucket, so objects of the client use SSE-S3.
+    # hashed assets never change, while index.html must be revalidated to pick up a new version.
+    run "aws s3 sync ${S3_DIR}/web/client s3://$(bucket)/web/client/$(client_version)
+      --exclude index.html --sse AES256 --cache-control max-age=31536000,immutable --profile ${PROFILE}"
+    run "aws s3 cp ${S3_DIR}/web/client/index.html s3://$(bucket)/web/client/$(client_version)/index.html
+      --sse AES256 --cache-control no-cache --profile ${PROFILE}"
+  else
+    run "aws s3 cp ${S3_DIR}/web/ROOT.war s3://$(bucket)/web/ROOT.war --profile ${PROFILE}"
+  fi
 }
 
 function copy_server() {
@@ -142,6 +188,7 @@ function copy_server() {
 
 function copy_assets() {
   copy_template
+  copy_lambda_layer
   copy_lambda_common
 
   if [ $system == "all" ] || [ $system == "vpc" ]; then
@@ -196,9 +243,17 @@ function deploy_base() {
   if [ $component == "all" ] || [ $component == "db" ]; then
     run "cdk deploy ${DR}DynamoDb --require-approval never --profile ${PROFILE}"
   fi
+
+  if [ $component == "dax" ]; then
+    run "cdk deploy ${DR}Dax --require-approval never --profile ${PROFILE}"
+  fi
 }
 
 function deploy_common() {
+  if [ $component == "all" ] || [ $component == "common.layer" ]; then
+    run "cdk deploy ${DR}Common-Layer --require-approval never --profile ${PROFILE}"
+  fi
+
   if [ $component == "common.f" ]; then
     run "cdk deploy ${DR}Common-Lambda --require-approval never --profile ${PROFILE}"
   fi
@@ -290,6 +345,10 @@ function deploy_vpc() {
   if [ $component == "all" ] || [ $component == "vpc.steps" ]; then
     run "cdk deploy ${DR}Vpc-Steps --require-approval never --profile ${PROFILE}"
   fi
+
+  if ([ $component == "all" ] || [ $component == "vpc.watch" ]) && vpc_watch; then
+    run "cdk deploy ${DR}Vpc-Watch* --require-approval never --profile ${PROFILE}"
+  fi
 }
 
 function deploy_ce() {
@@ -316,9 +375,19 @@ function deploy_cem() {
   fi
 }
 
+function deploy_archive() {
+  # archives the tables of all subsystems, including cem.
+  if [[ ($component == "all" && $system == "all") || $component == "archive" ]] && archive; then
+    run "cdk deploy ${DR}Archive --require-approval never --profile ${PROFILE}"
+  fi
+}
+
 function deploy_site() {
   if [ $component == "all" ] || [ $component == "site" ]; then
     run "cdk deploy ${DR}Beanstalk --require-approval never --profile ${PROFILE}"
+    if static_site; then
+      run "cdk deploy ${DR}Static-Site --require-approval never --profile ${PROFILE}"
+    fi
   fi
 }
 
@@ -364,6 +433,7 @@ function deploy() {
     deploy_cem
   fi
 
+  deploy_archive
   deploy_site
   deploy_route
   run "echo 'bye.'"
@@ -377,8 +447,16 @@ function delete_repository() {
 function destroy() {
   if [ $component == "all" ]; then
     run "cdk destroy ${DR}Route                --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}Static-Site          --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Beanstalk            --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}Archive              --force --profile ${PROFILE}"
+
+    run "cdk destroy ${DR}${CE}-Steps          --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}${CE}-CodeDeploy     --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}${CE}-Lambda         --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}${CE}-Ssm            --force --profile ${PROFILE}"
 
+    run "cdk destroy ${DR}Vpc-Watch*           --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Vpc-Steps            --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Vpc-CodeDeploy       --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Vpc-Lambda           --force --profile ${PROFILE}"
@@ -389,11 +467,6 @@ function destroy() {
     run "cdk destroy ${DR}S3-CodeDeploy        --force --profile ${PROFILE}"
     run "cdk destroy ${DR}S3-Lambda            --force --profile ${PROFILE}"
 
-    run "cdk destroy ${DR}${CE}-Steps          --force --profile ${PROFILE}"
-    run "cdk destroy ${DR}${CE}-CodeDeploy     --force --profile ${PROFILE}"
-    run "cdk destroy ${DR}${CE}-Lambda         --force --profile ${PROFILE}"
-    run "cdk destroy ${DR}${CE}-Ssm            --force --profile ${PROFILE}"
-
     run "cdk destroy ${DR}Cem                  --force --profile ${PROFILE}"
 
     delete_repository "drportal/dbdump/mysql/dump"
@@ -408,15 +481,22 @@ function destroy() {
     run "cdk destroy ${DR}Dynamo-Ecs           --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Dynamo-CodeDeploy    --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Dynamo-Lambda        --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}Dax                  --force --profile ${PROFILE}"
     run "cdk destroy ${DR}DynamoDb             --force --profile ${PROFILE}"
 
     run "cdk destroy ${DR}Common-CodeDeploy    --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Common-Api           --force --profile ${PROFILE}"
     run "cdk destroy ${DR}Common-Lambda        --force --profile ${PROFILE}"
+    run "cdk destroy ${DR}Common-Layer         --force --profile ${PROFILE}"
 
+    # the flow log of the common VPC writes to the buckets, so the VPC goes first.
+    run "cdk destroy ${DR}Vpc                  --force --profile ${PROFILE}"
     run "aws s3 rm s3://$(bucket)          --recursive --profile ${PROFILE}"
+    local -r flow_log_bucket=$(aws ssm get-parameters --names "/drportal/s3/flow-log-bucket" --profile ${PROFILE} | jq -r .Parameters[0].Value)
+    if [ "${flow_log_bucket}" != "null" ]; then
+      run "aws s3 rm s3://${flow_log_bucket} --recursive --profile ${PROFILE}"
+    fi
     run "cdk destroy ${DR}Bucket               --force --profile ${PROFILE}"
-    run "cdk destroy ${DR}Vpc                  --force --profile ${PROFILE}"
   fi
 }
 
@@ -441,10 +521,22 @@ function update_function() {
 
 function update() {
   local -r common_prefix="DRPCommon"
-  local -ra common_names=("ApiFindProjectById" "ApiUpdateItemState" "AddPeerRoute" "DeletePeerRoute" "DeployCommonVpc" "PeerVpc" "UnpeerVpc" "DeleteProject" "FindProject" "FindCommonSubnet" "UpdateItemState")
+  local -a common_names=("ApiFindProjectById" "ApiUpdateItemState" "AddPeerRoute" "DeletePeerRoute" "DeployCommonVpc" "PeerVpc" "UnpeerVpc" "DeleteProject" "FindProject" "FindCommonSubnet" "UpdateItemState")
+  if [ "${TRANSIT_GATEWAY}" == "true" ]; then
+    common_names+=("AddTransitRoute" "AttachTransitGateway" "DeleteTransitRoute" "DetachTransitGateway")
+  fi
+  if [ "${API_BATCH_UPDATE}" == "true" ]; then
+    common_names+=("ApiBatchUpdateItemState")
+  fi
 
   local -r vpc_prefix="DRPVpc"
-  local -ra vpc_names=("AddVpcItem" "CheckVpcReplicated" "CreateVpcProject" "DeleteVpc" "UpdateTargetVpc" "ReplicateVpc" "ReplicateDhcp" "ReplicateSubnet" "ReplicateNetworkAcl" "ReplicateNatGateway" "ReplicateSecurityGroup" "ReplicateSecurityGroupRule" "ReplicateEgressIgw" "ReplicateIgw" "ReplicateRouteTable" "ReplicateEndpoint" "CheckWatchReady")
+  local -a vpc_names=("AddVpcItem" "CheckVpcReplicated" "CreateVpcProject" "DeleteVpc" "UpdateTargetVpc" "ReplicateVpc" "ReplicateDhcp" "ReplicateSubnet" "ReplicateNetworkAcl" "ReplicateNatGateway" "ReplicateSecurityGroup" "ReplicateSecurityGroupRule" "ReplicateEgressIgw" "ReplicateIgw" "ReplicateRouteTable" "ReplicateEndpoint" "CheckWatchReady")
+  if [ "${VPC_RESOURCE_FAN_OUT}" == "true" ]; then
+    vpc_names+=("DiffVpc" "ListVpcResources" "MergeResourceMaps" "SaveVpcFingerprints" "ReplicateNatGatewayRoute")
+  fi
+  if vpc_watch; then
+    vpc_names+=("ReplicateVpcChange")
+  fi
 
   local -r ce_prefix="DRP${CE}"
   local -ra ce_names=("CheckName" "CreateCredential" "CreateEndureProject" "CreatePortalProject" "ConfigureProject" "LinkConfig" "InstallAgent" "DeleteEndureProject" "DeployInstallAgentDocument" "ConfigureBlueprint" "LaunchMachines" "TerminateInstances" "PrepareProjectName")
@@ -466,6 +558,9 @@ function update() {
     for ((i = 0; i < ${#common_names[@]}; i++)); do
       update_function $common_prefix${common_names[$i]} $(bucket) "lambda/common.zip" $PROFILE
     done
+    if archive; then
+      update_function "DRPArchiveExpiredItems" $(bucket) "lambda/common.zip" $PROFILE
+    fi
   fi
 
   if [ $component == "all" ] || [ $component == "ce.f" ]; then
@@ -526,6 +621,13 @@ function update_beanstalk() {
   local app_name
   local env_id
 
+  # a new version of the static client is served once the origin path of the distribution points at it.
+  if [ $component == "client" ] && static_site; then
+    copy_client
+    run "cdk deploy ${DR}Static-Site --require-approval never --profile ${PROFILE}"
+    return
+  fi
+
   if [ $component == "client" ]; then
     copy_client
     app_name=$(get_application_name "Client")
@@ -577,7 +679,7 @@ while getopts ":a:c:i:s:p:" option; do
     ;;
   c)
     component=${OPTARG}
-    [[ $component == "all" || $component == "vpc" || $component == "bucket" || $component == "db" || $component == "common.f" || $component == "common.api" || $component == "common.deploy" || $component == "ce.f" || $component == "ce.deploy" || $component == "ce.steps" || $component == "ce.ssm" || $component == "cem.base" || $component == "vpc.f" || $component == "vpc.deploy" || $component == "vpc.steps" || $component == "s3.ecs" || $component == "s3.f" || $component == "s3.deploy" || $component == "s3.steps" || $component == "dynamo.ecs" || $component == "dynamo.f" || $component == "dynamo.deploy" || $component == "dynamo.steps" || $component == "dbdump.mysql.ecs" || $component == "dbdump.mysql.f" || $component == "dbdump.mysql.steps" || $component == "dbreplica.oracle.f" || $component == "dbreplica.oracle.steps" || $component == "site" || $component == "client" || $component == "server" || $component == "route" ]] || usage
+    [[ $component == "all" || $component == "vpc" || $component == "bucket" || $component == "db" || $component == "dax" || $component == "common.f" || $component == "common.layer" || $component == "common.api" || $component == "common.deploy" || $component == "ce.f" || $component == "ce.deploy" || $component == "ce.steps" || $component == "ce.ssm" || $component == "cem.base" || $component == "vpc.f" || $component == "vpc.deploy" || $component == "vpc.steps" || $component == "vpc.watch" || $component == "s3.ecs" || $component == "s3.f" || $component == "s3.deploy" || $component == "s3.steps" || $component == "dynamo.ecs" || $component == "dynamo.f" || $component == "dynamo.deploy" || $component == "dynamo.steps" || $component == "dbdump.mysql.ecs" || $component == "dbdump.mysql.f" || $component == "dbdump.mysql.steps" || $component == "dbreplica.oracle.f" || $component == "dbreplica.oracle.steps" || $component == "archive" || $component == "site" || $component == "client" || $component == "server" || $component == "route" ]] || usage
     ;;
   i)
     image=${OPTARG}
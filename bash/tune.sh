@@ -0,0 +1,137 @@
+#!/bin/bash
+
+# Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+# SPDX-License-Identifier: Apache-2.0
+
+# This script measures the duration of lambda functions against their memory sizes,
+# so that the profiles in FunctionProfiles.yaml can be tuned with real numbers.
+
+readonly ASSET_DIR="/tmp/drportal"
+readonly TUNE_DIR="${ASSET_DIR}/tune"
+
+declare functions=""
+declare memories="512,1024,1536,2048,3008"
+declare count=5
+declare payload_dir=""
+
+function usage() {
+  echo "Usage:"
+  echo "./tune.sh -f DRPS3CheckBucketValid[,DRPDynamoCheckSchema...]"
+  echo "          -e payloads"
+  echo "          [-m 512,1024,1536,2048,3008]"
+  echo "          [-n 5]"
+  echo " -f the functions to tune, separated by comma."
+  echo " -e the directory of events, one <function>.json per function, sent to each invocation."
+  echo " -m the memory sizes in MB to measure, default to 512,1024,1536,2048,3008."
+  echo " -n the number of invocations per memory size, default to 5."
+  echo
+  echo "Every invocation runs the function for real, so only tune functions without side effects"
+  echo "(Check*, Find*, Get*) or give them an event of a project that is safe to change."
+  echo "Functions without an event file are skipped."
+  echo
+  echo "Set the following environment variables first:"
+  echo " - PROFILE:        the credential profile for target region"
+  echo
+  echo "Results are appended to ${TUNE_DIR}/<function>.csv as"
+  echo "  memory,invocation,duration,billed_duration,max_memory_used,init_duration"
+  exit 1
+}
+
+function check_env() {
+  if [ -z ${PROFILE} ] || [ -z ${functions} ] || [ -z ${payload_dir} ] || [ ! -d ${payload_dir} ]; then
+    usage
+  fi
+
+  mkdir -p ${TUNE_DIR}
+}
+
+function datetime_now() {
+  echo $(date "+%Y-%m-%d %H:%M:%S - ")
+}
+
+function current_memory() {
+  local -r function_name=$1
+
+  echo $(aws lambda get-function-configuration --function-name ${function_name} --profile ${PROFILE} | jq -r .MemorySize)
+}
+
+function set_memory() {
+  local -r function_name=$1
+  local -r memory=$2
+
+  aws lambda update-function-configuration --function-name ${function_name} --memory-size ${memory} \
+    --profile ${PROFILE} >/dev/null
+  aws lambda wait function-updated --function-name ${function_name} --profile ${PROFILE}
+}
+
+# Prints one csv line parsed from the REPORT line of the tail log.
+function invoke() {
+  local -r function_name=$1
+  local -r memory=$2
+  local -r index=$3
+  local -r payload="${payload_dir}/${function_name}.json"
+  local report
+
+  report=$(aws lambda invoke --function-name ${function_name} --payload fileb://${payload} \
+    --log-type Tail --query LogResult --output text --profile ${PROFILE} /dev/null | base64 --decode | grep REPORT)
+
+  local -r duration=$(echo "$report" | sed -n 's/.*\tDuration: \([0-9.]*\) ms.*/\1/p')
+  local -r billed=$(echo "$report" | sed -n 's/.*Billed Duration: \([0-9.]*\) ms.*/\1/p')
+  local -r used=$(echo "$report" | sed -n 's/.*Max Memory Used: \([0-9]*\) MB.*/\1/p')
+  local -r init=$(echo "$report" | sed -n 's/.*Init Duration: \([0-9.]*\) ms.*/\1/p')
+
+  echo "${memory},${index},${duration},${billed},${used},${init}"
+}
+
+function tune() {
+  local -r function_name=$1
+  local -r result="${TUNE_DIR}/${function_name}.csv"
+
+  if [ ! -f "${payload_dir}/${function_name}.json" ]; then
+    echo "$(datetime_now) ${function_name} skipped, no event at ${payload_dir}/${function_name}.json"
+    return
+  fi
+
+  local -r original=$(current_memory ${function_name})
+
+  echo "$(datetime_now) ${function_name}, original memory ${original} MB"
+  [ -f ${result} ] || echo "memory,invocation,duration,billed_duration,max_memory_used,init_duration" >${result}
+
+  for memory in ${memories//,/ }; do
+    echo "$(datetime_now) ${function_name} with ${memory} MB"
+    # updating the configuration forces a cold start on the first invocation
+    set_memory ${function_name} ${memory}
+    for ((i = 1; i <= count; i++)); do
+      invoke ${function_name} ${memory} ${i} >>${result}
+    done
+  done
+
+  set_memory ${function_name} ${original}
+  echo "$(datetime_now) ${function_name} restored to ${original} MB, see ${result}"
+}
+
+function tune_main() {
+  echo ""
+  echo "Tune lambda memory sizes"
+  check_env
+
+  for function_name in ${functions//,/ }; do
+    tune ${function_name}
+  done
+}
+
+while getopts ":f:m:n:e:" option; do
+  case $option in
+  f) functions=${OPTARG} ;;
+  m) memories=${OPTARG} ;;
+  n)
+    count=${OPTARG}
+    [[ $count =~ ^[0-9]+$ ]] || usage
+    ;;
+  e) payload_dir=${OPTARG} ;;
+  *) usage ;;
+  esac
+done
+shift $((OPTIND - 1))
+
+tune_main
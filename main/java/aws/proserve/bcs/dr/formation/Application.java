@@ -11,11 +11,14 @@ import aws.proserve.bcs.dr.formation.cem.CemStack;
 import aws.proserve.bcs.dr.formation.common.CommonApiStack;
 import aws.proserve.bcs.dr.formation.common.CommonDeployStack;
 import aws.proserve.bcs.dr.formation.common.CommonLambdaStack;
+import aws.proserve.bcs.dr.formation.common.LayerStack;
 import aws.proserve.bcs.dr.formation.dbdump.mysql.DbDumpMySqlDumpEcsStack;
 import aws.proserve.bcs.dr.formation.dbdump.mysql.DbDumpMySqlLambdaStack;
 import aws.proserve.bcs.dr.formation.dbdump.mysql.DbDumpMySqlStepsStack;
 import aws.proserve.bcs.dr.formation.dbreplica.oracle.DbReplicaOracleLambdaStack;
 import aws.proserve.bcs.dr.formation.dbreplica.oracle.DbReplicaOracleStepsStack;
+import aws.proserve.bcs.dr.formation.dynamo.ArchiveStack;
+import aws.proserve.bcs.dr.formation.dynamo.DaxStack;
 import aws.proserve.bcs.dr.formation.dynamo.DynamoDbStack;
 import aws.proserve.bcs.dr.formation.dynamo.DynamoDeployStack;
 import aws.proserve.bcs.dr.formation.dynamo.DynamoEcsStack;
@@ -27,11 +30,13 @@ import aws.proserve.bcs.dr.formation.s3.S3EcsStack;
 import aws.proserve.bcs.dr.formation.s3.S3LambdaStack;
 import aws.proserve.bcs.dr.formation.s3.S3StepsStack;
 import aws.proserve.bcs.dr.formation.site.BeanstalkStack;
+import aws.proserve.bcs.dr.formation.site.StaticSiteStack;
 import aws.proserve.bcs.dr.formation.vpc.RouteStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcDeployStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcLambdaStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcStepsStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcWatchStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +63,7 @@ public class Application {
                 CommonApiStack commonApiStack,
                 CommonLambdaStack commonLambdaStack,
                 CommonDeployStack commonDeployStack,
+                LayerStack layerStack,
                 CloudEndureSsmStack cloudEndureSsmStack,
                 CloudEndureLambdaStack cloudEndureLambdaStack,
                 CloudEndureDeployStack cloudEndureDeployStack,
@@ -68,6 +74,8 @@ public class Application {
                 DbReplicaOracleLambdaStack dbReplicaOracleLambdaStack,
                 DbReplicaOracleStepsStack dbReplicaOracleStepsStack,
                 DynamoDbStack dynamoDbStack,
+                DaxStack daxStack,
+                ArchiveStack archiveStack,
                 DynamoEcsStack dynamoEcsStack,
                 DynamoLambdaStack dynamoLambdaStack,
                 DynamoDeployStack dynamoDeployStack,
@@ -77,11 +85,13 @@ public class Application {
                 S3LambdaStack s3LambdaStack,
                 S3DeployStack s3DeployStack,
                 S3StepsStack s3StepsStack,
+                StaticSiteStack staticSiteStack,
                 BucketStack bucketStack,
                 VpcStack vpcStack,
                 VpcLambdaStack vpcLambdaStack,
                 VpcDeployStack vpcDeployStack,
-                VpcStepsStack vpcStepsStack
+                VpcStepsStack vpcStepsStack,
+                VpcWatchStack vpcWatchStack
         ) {
         }
     }
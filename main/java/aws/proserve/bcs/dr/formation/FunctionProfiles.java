@@ -0,0 +1,206 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import org.yaml.snakeyaml.Yaml;
+import software.amazon.awscdk.services.lambda.CfnFunction;
+import software.amazon.awscdk.services.lambda.Function;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+
+/**
+ * Per-function memory, timeout, ephemeral storage, concurrency and SnapStart, loaded from
+ * {@code FunctionProfiles.yaml}. A function without an entry uses the {@code defaults} entry,
+ * and a property without a value keeps the one set by {@code LambdaStack}.
+ */
+@Singleton
+public class FunctionProfiles extends YamlProfiles<FunctionProfiles.Profile> {
+    private static final String RESOURCE = "FunctionProfiles.yaml";
+    private static final int SNAP_START_MAX_EPHEMERAL_STORAGE = 512;
+
+    @Inject
+    FunctionProfiles(Yaml yaml) {
+        super(yaml, RESOURCE, Profiles.class, Profile::new);
+    }
+
+    /**
+     * @param function     the function created by {@code LambdaStack}.
+     * @param functionName the physical name of the function, such as {@code DRPS3ScanBucket}.
+     * @return the same function with its profile applied.
+     */
+    public Function apply(Function function, String functionName) {
+        final var profile = profile(functionName);
+        final var cfn = (CfnFunction) function.getNode().getDefaultChild();
+
+        final var memorySize = profile.getMemorySize();
+        if (memorySize != null) {
+            cfn.setMemorySize(memorySize);
+        }
+
+        final var timeout = profile.getTimeout();
+        if (timeout != null) {
+            cfn.setTimeout(timeout);
+        }
+
+        final var ephemeralStorage = profile.getEphemeralStorage();
+        if (ephemeralStorage != null) {
+            cfn.setEphemeralStorage(CfnFunction.EphemeralStorageProperty.builder()
+                    .size(ephemeralStorage)
+                    .build());
+        }
+
+        final var reservedConcurrency = profile.getReservedConcurrency();
+        if (reservedConcurrency != null) {
+            cfn.setReservedConcurrentExecutions(reservedConcurrency);
+        }
+
+        // SnapStart does not support Java 8, provisioned concurrency or ephemeral storage larger than 512 MB.
+        if (Boolean.TRUE.equals(profile.getSnapStart()) && isSnapStartSupported()
+                && !function.getRuntime().getName().startsWith("java8")
+                && profile.getProvisionedConcurrency() == null
+                && (ephemeralStorage == null || ephemeralStorage <= SNAP_START_MAX_EPHEMERAL_STORAGE)) {
+            cfn.setSnapStart(CfnFunction.SnapStartProperty.builder()
+                    .applyOn("PublishedVersions")
+                    .build());
+        }
+
+        return function;
+    }
+
+    @Override
+    protected Profile merge(Profile profile, Profile defaults) {
+        final var merged = new Profile();
+        merged.setMemorySize(valueOf(profile.getMemorySize(), defaults.getMemorySize()));
+        merged.setTimeout(valueOf(profile.getTimeout(), defaults.getTimeout()));
+        merged.setEphemeralStorage(valueOf(profile.getEphemeralStorage(), defaults.getEphemeralStorage()));
+        merged.setReservedConcurrency(valueOf(profile.getReservedConcurrency(), defaults.getReservedConcurrency()));
+        merged.setSnapStart(valueOf(profile.getSnapStart(), defaults.getSnapStart()));
+        merged.setProvisionedConcurrency(
+                valueOf(profile.getProvisionedConcurrency(), defaults.getProvisionedConcurrency()));
+        merged.setDrillProvisionedConcurrency(
+                valueOf(profile.getDrillProvisionedConcurrency(), defaults.getDrillProvisionedConcurrency()));
+        return merged;
+    }
+
+    /**
+     * @return false for partitions where SnapStart is unavailable, judged by {@code REGION}.
+     */
+    public static boolean isSnapStartSupported() {
+        final var region = System.getenv("REGION");
+        return region == null || !(region.startsWith("cn-") || region.startsWith("us-gov-"));
+    }
+
+    public static class Profiles implements Document<Profile> {
+        private Profile defaults;
+        private Map<String, Profile> functions;
+
+        @Override
+        public Profile getDefaults() {
+            return defaults;
+        }
+
+        public void setDefaults(Profile defaults) {
+            this.defaults = defaults;
+        }
+
+        public Map<String, Profile> getFunctions() {
+            return functions;
+        }
+
+        public void setFunctions(Map<String, Profile> functions) {
+            this.functions = functions;
+        }
+
+        @Override
+        public Map<String, Profile> getEntries() {
+            return functions;
+        }
+    }
+
+    public static class Profile {
+        private Integer memorySize;
+        private Integer timeout;
+        private Integer ephemeralStorage;
+        private Integer reservedConcurrency;
+        private Boolean snapStart;
+        private Integer provisionedConcurrency;
+        private Integer drillProvisionedConcurrency;
+
+        /**
+         * @return memory in MB, which also decides the CPU share of the function.
+         */
+        public Integer getMemorySize() {
+            return memorySize;
+        }
+
+        public void setMemorySize(Integer memorySize) {
+            this.memorySize = memorySize;
+        }
+
+        /**
+         * @return timeout in seconds.
+         */
+        public Integer getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Integer timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return size of {@code /tmp} in MB.
+         */
+        public Integer getEphemeralStorage() {
+            return ephemeralStorage;
+        }
+
+        public void setEphemeralStorage(Integer ephemeralStorage) {
+            this.ephemeralStorage = ephemeralStorage;
+        }
+
+        public Integer getReservedConcurrency() {
+            return reservedConcurrency;
+        }
+
+        public void setReservedConcurrency(Integer reservedConcurrency) {
+            this.reservedConcurrency = reservedConcurrency;
+        }
+
+        /**
+         * @return whether published versions are snapshotted, so that aliases start from a snapshot.
+         */
+        public Boolean getSnapStart() {
+            return snapStart;
+        }
+
+        public void setSnapStart(Boolean snapStart) {
+            this.snapStart = snapStart;
+        }
+
+        /**
+         * @return provisioned concurrency of the {@code prod} alias, only honored by deploy stacks that support it.
+         */
+        public Integer getProvisionedConcurrency() {
+            return provisionedConcurrency;
+        }
+
+        public void setProvisionedConcurrency(Integer provisionedConcurrency) {
+            this.provisionedConcurrency = provisionedConcurrency;
+        }
+
+        /**
+         * @return provisioned concurrency of the {@code prod} alias between {@code DRILL_START} and {@code DRILL_END}.
+         */
+        public Integer getDrillProvisionedConcurrency() {
+            return drillProvisionedConcurrency;
+        }
+
+        public void setDrillProvisionedConcurrency(Integer drillProvisionedConcurrency) {
+            this.drillProvisionedConcurrency = drillProvisionedConcurrency;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import aws.proserve.bcs.dr.formation.common.LayerStack;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * What every function of DRPortal is created with: its profile, the shared layers and the secrets extension.
+ */
+@Singleton
+public class FunctionSupport {
+    private final FunctionProfiles profiles;
+    private final LayerStack layerStack;
+    private final SecretsExtension secretsExtension;
+
+    @Inject
+    FunctionSupport(
+            FunctionProfiles profiles,
+            LayerStack layerStack,
+            SecretsExtension secretsExtension) {
+        this.profiles = profiles;
+        this.layerStack = layerStack;
+        this.secretsExtension = secretsExtension;
+    }
+
+    public FunctionProfiles getProfiles() {
+        return profiles;
+    }
+
+    public LayerStack getLayerStack() {
+        return layerStack;
+    }
+
+    public SecretsExtension getSecretsExtension() {
+        return secretsExtension;
+    }
+}
@@ -8,4 +8,102 @@ public final class Keys {
 
     public static final String CERTIFICATE_ID = "CERTIFICATE_ID";
 
+    public static final String DRILL_START = "DRILL_START";
+
+    public static final String DRILL_END = "DRILL_END";
+
+    public static final String LAYER_SDK_HASH = "LAYER_SDK_HASH";
+
+    public static final String LAYER_RUNTIME_HASH = "LAYER_RUNTIME_HASH";
+
+    public static final String SECRETS_EXTENSION_ARN = "SECRETS_EXTENSION_ARN";
+
+    public static final String SECRETS_EXTENSION_TTL = "SECRETS_EXTENSION_TTL";
+
+    public static final String API_CACHE_SIZE = "API_CACHE_SIZE";
+
+    public static final String PROJECT_CACHE_TTL = "PROJECT_CACHE_TTL";
+
+    public static final String API_THROTTLE_RATE = "API_THROTTLE_RATE";
+
+    public static final String API_THROTTLE_BURST = "API_THROTTLE_BURST";
+
+    public static final String API_READ_THROTTLE_RATE = "API_READ_THROTTLE_RATE";
+
+    public static final String API_READ_THROTTLE_BURST = "API_READ_THROTTLE_BURST";
+
+    public static final String API_WRITE_THROTTLE_RATE = "API_WRITE_THROTTLE_RATE";
+
+    public static final String API_WRITE_THROTTLE_BURST = "API_WRITE_THROTTLE_BURST";
+
+    public static final String API_BATCH_UPDATE = "API_BATCH_UPDATE";
+
+    public static final String API_BATCH_THROTTLE_RATE = "API_BATCH_THROTTLE_RATE";
+
+    public static final String API_BATCH_THROTTLE_BURST = "API_BATCH_THROTTLE_BURST";
+
+    public static final String API_KEY_REQUIRED = "API_KEY_REQUIRED";
+
+    public static final String DAX_NODE_COUNT = "DAX_NODE_COUNT";
+
+    public static final String DAX_NODE_TYPE = "DAX_NODE_TYPE";
+
+    public static final String REPLICA_REGIONS = "REPLICA_REGIONS";
+
+    public static final String TABLE_INDEXES = "TABLE_INDEXES";
+
+    public static final String ARCHIVE = "ARCHIVE";
+
+    public static final String VPC_CLAIM_CHECK = "VPC_CLAIM_CHECK";
+
+    public static final String VPC_RESOURCE_FAN_OUT = "VPC_RESOURCE_FAN_OUT";
+
+    public static final String VPC_REPLICATION_CONCURRENCY = "VPC_REPLICATION_CONCURRENCY";
+
+    public static final String VPC_WATCH = "VPC_WATCH";
+
+    public static final String WATCH_REGIONS = "WATCH_REGIONS";
+
+    public static final String TRANSIT_GATEWAY = "TRANSIT_GATEWAY";
+
+    public static final String FLOW_LOG_DESTINATION = "FLOW_LOG_DESTINATION";
+
+    public static final String FLOW_LOG_TRAFFIC_TYPE = "FLOW_LOG_TRAFFIC_TYPE";
+
+    public static final String FLOW_LOG_AGGREGATION_INTERVAL = "FLOW_LOG_AGGREGATION_INTERVAL";
+
+    public static final String LOAD_BALANCER = "LOAD_BALANCER";
+
+    public static final String CLIENT_INSTANCE_TYPES = "CLIENT_INSTANCE_TYPES";
+
+    public static final String CLIENT_MIN_SIZE = "CLIENT_MIN_SIZE";
+
+    public static final String CLIENT_MAX_SIZE = "CLIENT_MAX_SIZE";
+
+    public static final String CLIENT_SCALING_TRIGGER = "CLIENT_SCALING_TRIGGER";
+
+    public static final String SERVER_INSTANCE_TYPES = "SERVER_INSTANCE_TYPES";
+
+    public static final String SERVER_MIN_SIZE = "SERVER_MIN_SIZE";
+
+    public static final String SERVER_MAX_SIZE = "SERVER_MAX_SIZE";
+
+    public static final String SERVER_SCALING_TRIGGER = "SERVER_SCALING_TRIGGER";
+
+    public static final String SERVER_JVM_PROFILE = "SERVER_JVM_PROFILE";
+
+    public static final String SERVER_JFR = "SERVER_JFR";
+
+    public static final String SERVER_CDS_ARCHIVE = "SERVER_CDS_ARCHIVE";
+
+    public static final String SITE_MODE = "SITE_MODE";
+
+    public static final String CLIENT_VERSION = "CLIENT_VERSION";
+
+    public static final String SITE_API_PATH = "SITE_API_PATH";
+
+    public static final String SITE_WEB_ACL_ID = "SITE_WEB_ACL_ID";
+
+    public static final String SERVER_DOMAIN = "SERVER_DOMAIN";
+
 }
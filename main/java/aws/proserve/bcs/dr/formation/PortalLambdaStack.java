@@ -0,0 +1,75 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import aws.proserve.bcs.dr.formation.common.LayerStack;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
+import aws.proserve.bcs.formation.LambdaStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.IFunction;
+import software.amazon.awscdk.services.lambda.ILayerVersion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates functions with their profile and the shared layers applied, and with the secrets extension attached
+ * if the stack {@link #usesSecrets() uses secrets}.
+ */
+public abstract class PortalLambdaStack extends LambdaStack {
+    private final FunctionSupport support;
+
+    private List<ILayerVersion> layers;
+
+    protected PortalLambdaStack(App app, String id, BucketStack bucketStack, FunctionSupport support) {
+        super(app, id, bucketStack);
+        this.support = support;
+    }
+
+    /**
+     * @param label        the construct id of the function.
+     * @param functionName the physical name of the function, which also selects its profile.
+     * @param handler      the handler class, without {@code ::handleRequest}.
+     * @param codeKey      the key of the bundle in the bucket.
+     */
+    protected Function createFunction(String label, String functionName, String handler, String description,
+                                      String codeKey) {
+        final var function = support.getProfiles().apply(createFunction(this, getRole(), label,
+                functionName,
+                handler + "::handleRequest",
+                description,
+                getBucket(), codeKey), functionName);
+
+        if (!LayerStack.isCompatible(function.getRuntime())) {
+            throw new IllegalStateException(String.format("Layers do not support runtime %s of %s",
+                    function.getRuntime().getName(), functionName));
+        }
+        if (layers == null) {
+            layers = support.getLayerStack().getLayers(this);
+        }
+        layers.forEach(function::addLayers);
+        return usesSecrets() ? support.getSecretsExtension().apply(function) : function;
+    }
+
+    /**
+     * For stacks without a deploy stack, whose callers would otherwise run {@code $LATEST}, which SnapStart
+     * does not apply to.
+     *
+     * @return the current version of each function, keyed by label.
+     */
+    public Map<String, IFunction> getVersionMap() {
+        final var versionMap = new HashMap<String, IFunction>();
+        getFunctionMap().forEach((label, function) -> versionMap.put(label, function.getCurrentVersion()));
+        return versionMap;
+    }
+
+    /**
+     * @return whether functions read secrets or parameters, and so get the secrets extension.
+     */
+    protected boolean usesSecrets() {
+        return false;
+    }
+}
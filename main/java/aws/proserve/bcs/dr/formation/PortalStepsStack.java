@@ -0,0 +1,75 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.formation.StepsStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.services.dynamodb.ITable;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.stepfunctions.JsonPath;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoAttributeValue;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoDeleteItem;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoGetItem;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoUpdateItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds builders of tasks that call AWS services directly, for steps that do not need a lambda function.
+ * The policies of these tasks are added to the role of the state machine.
+ */
+public abstract class PortalStepsStack extends StepsStack {
+
+    private final Map<String, ITable> tableMap = new HashMap<>();
+
+    protected PortalStepsStack(App app, String id) {
+        super(app, id);
+    }
+
+    /**
+     * @return a task putting the item whose id is at {@code keyPath} to {@code resultPath}, as DynamoDB JSON.
+     */
+    protected DynamoGetItem getItem(String id, String tableName, String keyPath, String resultPath) {
+        return DynamoGetItem.Builder
+                .create(this, id)
+                .table(table(tableName))
+                .key(key(keyPath))
+                .consistentRead(true)
+                .resultPath(resultPath)
+                .build();
+    }
+
+    protected DynamoDeleteItem deleteItem(String id, String tableName, String keyPath) {
+        return DynamoDeleteItem.Builder
+                .create(this, id)
+                .table(table(tableName))
+                .key(key(keyPath))
+                .resultPath(JsonPath.DISCARD)
+                .build();
+    }
+
+    protected DynamoUpdateItem updateItem(String id, String tableName, String keyPath, String expression,
+                                          Map<String, String> names, Map<String, DynamoAttributeValue> values) {
+        return DynamoUpdateItem.Builder
+                .create(this, id)
+                .table(table(tableName))
+                .key(key(keyPath))
+                .updateExpression(expression)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .resultPath(JsonPath.DISCARD)
+                .build();
+    }
+
+    private ITable table(String tableName) {
+        return tableMap.computeIfAbsent(tableName,
+                name -> Table.fromTableName(this, name + "Table", name));
+    }
+
+    private Map<String, DynamoAttributeValue> key(String keyPath) {
+        return Map.of(DynamoConstants.KEY_ID, DynamoAttributeValue.fromString(JsonPath.stringAt(keyPath)));
+    }
+}
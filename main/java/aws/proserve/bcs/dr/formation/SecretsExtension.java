@@ -0,0 +1,61 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.LayerVersion;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Attaches the AWS Parameters and Secrets Lambda extension, which caches secrets and parameters inside the
+ * execution environment. The layer ARN differs by region, so it is read from {@code SECRETS_EXTENSION_ARN};
+ * without it, functions keep calling Secrets Manager and SSM directly. Only handlers reading
+ * {@link #ENV_SECRETS_ENDPOINT} and {@link #ENV_PARAMETERS_ENDPOINT} go through the cache, the others are not
+ * affected.
+ */
+@Singleton
+public class SecretsExtension {
+    public static final String ENV_SECRETS_ENDPOINT = "SECRETS_CACHE_ENDPOINT";
+    public static final String ENV_PARAMETERS_ENDPOINT = "PARAMETERS_CACHE_ENDPOINT";
+
+    private static final int PORT = 2773;
+    private static final int DEFAULT_TTL = 300;
+    private static final int MAX_TTL = 300;
+
+    private final String layerArn;
+    private final String ttl;
+
+    @Inject
+    SecretsExtension() {
+        this.layerArn = System.getenv(Keys.SECRETS_EXTENSION_ARN);
+
+        final var ttlValue = System.getenv(Keys.SECRETS_EXTENSION_TTL);
+        final var seconds = ttlValue == null ? DEFAULT_TTL : Integer.parseInt(ttlValue);
+        // the extension fails to start with a larger TTL, which fails every invocation of the function.
+        if (seconds < 0 || seconds > MAX_TTL) {
+            throw new IllegalArgumentException(String.format("%s must be between 0 and %d, but is %d",
+                    Keys.SECRETS_EXTENSION_TTL, MAX_TTL, seconds));
+        }
+        this.ttl = String.valueOf(seconds);
+    }
+
+    public Function apply(Function function) {
+        if (layerArn == null) {
+            return function;
+        }
+
+        function.addLayers(LayerVersion.fromLayerVersionArn(function, "SecretsExtension", layerArn));
+        function.addEnvironment("PARAMETERS_SECRETS_EXTENSION_CACHE_ENABLED", "true");
+        function.addEnvironment("PARAMETERS_SECRETS_EXTENSION_HTTP_PORT", String.valueOf(PORT));
+        function.addEnvironment("SECRETS_MANAGER_TTL", ttl);
+        function.addEnvironment("SSM_PARAMETER_STORE_TTL", ttl);
+        function.addEnvironment(ENV_SECRETS_ENDPOINT,
+                String.format("http://localhost:%d/secretsmanager/get", PORT));
+        function.addEnvironment(ENV_PARAMETERS_ENDPOINT,
+                String.format("http://localhost:%d/systemsmanager/parameters/get", PORT));
+        return function;
+    }
+}
@@ -0,0 +1,254 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import org.yaml.snakeyaml.Yaml;
+import software.amazon.awscdk.services.applicationautoscaling.EnableScalingProps;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingSchedule;
+import software.amazon.awscdk.services.applicationautoscaling.Schedule;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.IScalableTableAttribute;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.dynamodb.UtilizationScalingProps;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-table billing mode and capacity, loaded from {@code TableProfiles.yaml}. Tables are on-demand unless
+ * their profile sets {@code billingMode: PROVISIONED}, in which case read and write capacity of the table and
+ * its indexes track utilization between the min and max capacity.
+ */
+@Singleton
+public class TableProfiles extends YamlProfiles<TableProfiles.Profile> {
+    private static final String RESOURCE = "TableProfiles.yaml";
+    private static final int DEFAULT_TARGET_UTILIZATION = 70;
+
+    @Inject
+    TableProfiles(Yaml yaml) {
+        super(yaml, RESOURCE, Profiles.class, Profile::new);
+    }
+
+    public BillingMode billingMode(String tableName) {
+        return isProvisioned(tableName) ? BillingMode.PROVISIONED : BillingMode.PAY_PER_REQUEST;
+    }
+
+    /**
+     * @return the initial read capacity, or null for on-demand tables which must not set it.
+     */
+    public Number readCapacity(String tableName) {
+        return isProvisioned(tableName) ? provisionedProfile(tableName).getMinReadCapacity() : null;
+    }
+
+    /**
+     * @return the initial write capacity, or null for on-demand tables which must not set it.
+     */
+    public Number writeCapacity(String tableName) {
+        return isProvisioned(tableName) ? provisionedProfile(tableName).getMinWriteCapacity() : null;
+    }
+
+    /**
+     * Scales a provisioned table and its indexes, and raises their floor to the drill capacity between
+     * {@code DRILL_START} and {@code DRILL_END}. On-demand tables are left unchanged.
+     */
+    public void apply(Table table, String tableName, List<String> indexNames) {
+        if (!isProvisioned(tableName)) {
+            return;
+        }
+
+        final var profile = provisionedProfile(tableName);
+        scale(table.autoScaleReadCapacity(scaling(profile.getMinReadCapacity(), profile.getMaxReadCapacity())),
+                "Read", profile, profile.getMinReadCapacity(), profile.getDrillReadCapacity());
+        scale(table.autoScaleWriteCapacity(scaling(profile.getMinWriteCapacity(), profile.getMaxWriteCapacity())),
+                "Write", profile, profile.getMinWriteCapacity(), profile.getDrillWriteCapacity());
+
+        for (var indexName : indexNames) {
+            scale(table.autoScaleGlobalSecondaryIndexReadCapacity(indexName,
+                    scaling(profile.getMinReadCapacity(), profile.getMaxReadCapacity())),
+                    indexName + "Read", profile, profile.getMinReadCapacity(), profile.getDrillReadCapacity());
+            scale(table.autoScaleGlobalSecondaryIndexWriteCapacity(indexName,
+                    scaling(profile.getMinWriteCapacity(), profile.getMaxWriteCapacity())),
+                    indexName + "Write", profile, profile.getMinWriteCapacity(), profile.getDrillWriteCapacity());
+        }
+    }
+
+    @Override
+    protected Profile merge(Profile profile, Profile defaults) {
+        final var merged = new Profile();
+        merged.setBillingMode(valueOf(profile.getBillingMode(), defaults.getBillingMode()));
+        merged.setMinReadCapacity(valueOf(profile.getMinReadCapacity(), defaults.getMinReadCapacity()));
+        merged.setMaxReadCapacity(valueOf(profile.getMaxReadCapacity(), defaults.getMaxReadCapacity()));
+        merged.setMinWriteCapacity(valueOf(profile.getMinWriteCapacity(), defaults.getMinWriteCapacity()));
+        merged.setMaxWriteCapacity(valueOf(profile.getMaxWriteCapacity(), defaults.getMaxWriteCapacity()));
+        merged.setDrillReadCapacity(valueOf(profile.getDrillReadCapacity(), defaults.getDrillReadCapacity()));
+        merged.setDrillWriteCapacity(valueOf(profile.getDrillWriteCapacity(), defaults.getDrillWriteCapacity()));
+        merged.setTargetUtilization(valueOf(valueOf(profile.getTargetUtilization(), defaults.getTargetUtilization()),
+                DEFAULT_TARGET_UTILIZATION));
+        return merged;
+    }
+
+    private boolean isProvisioned(String tableName) {
+        return BillingMode.PROVISIONED.name().equals(profile(tableName).getBillingMode());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the capacity a provisioned table scales between is left out,
+     * even from {@code defaults}.
+     */
+    private Profile provisionedProfile(String tableName) {
+        final var profile = profile(tableName);
+        if (profile.getMinReadCapacity() == null || profile.getMaxReadCapacity() == null
+                || profile.getMinWriteCapacity() == null || profile.getMaxWriteCapacity() == null) {
+            throw new IllegalArgumentException(String.format(
+                    "%s of table %s must set minReadCapacity, maxReadCapacity, minWriteCapacity and "
+                            + "maxWriteCapacity, or leave them to defaults", RESOURCE, tableName));
+        }
+        return profile;
+    }
+
+    private static EnableScalingProps scaling(int min, int max) {
+        return EnableScalingProps.builder()
+                .minCapacity(min)
+                .maxCapacity(Math.max(min, max))
+                .build();
+    }
+
+    private static void scale(IScalableTableAttribute attribute, String label, Profile profile,
+                              int min, Integer drill) {
+        attribute.scaleOnUtilization(UtilizationScalingProps.builder()
+                .targetUtilizationPercent(profile.getTargetUtilization())
+                .build());
+
+        final var start = System.getenv(Keys.DRILL_START);
+        final var end = System.getenv(Keys.DRILL_END);
+        if (drill == null || start == null || end == null) {
+            return;
+        }
+
+        attribute.scaleOnSchedule(label + "DrillStart", ScalingSchedule.builder()
+                .schedule(Schedule.expression(start))
+                .minCapacity(Math.max(min, drill))
+                .build());
+        attribute.scaleOnSchedule(label + "DrillEnd", ScalingSchedule.builder()
+                .schedule(Schedule.expression(end))
+                .minCapacity(min)
+                .build());
+    }
+
+    public static class Profiles implements Document<Profile> {
+        private Profile defaults;
+        private Map<String, Profile> tables;
+
+        @Override
+        public Profile getDefaults() {
+            return defaults;
+        }
+
+        public void setDefaults(Profile defaults) {
+            this.defaults = defaults;
+        }
+
+        public Map<String, Profile> getTables() {
+            return tables;
+        }
+
+        public void setTables(Map<String, Profile> tables) {
+            this.tables = tables;
+        }
+
+        @Override
+        public Map<String, Profile> getEntries() {
+            return tables;
+        }
+    }
+
+    public static class Profile {
+        private String billingMode;
+        private Integer minReadCapacity;
+        private Integer maxReadCapacity;
+        private Integer minWriteCapacity;
+        private Integer maxWriteCapacity;
+        private Integer drillReadCapacity;
+        private Integer drillWriteCapacity;
+        private Integer targetUtilization;
+
+        /**
+         * @return {@code PAY_PER_REQUEST} or {@code PROVISIONED}.
+         */
+        public String getBillingMode() {
+            return billingMode;
+        }
+
+        public void setBillingMode(String billingMode) {
+            this.billingMode = billingMode;
+        }
+
+        public Integer getMinReadCapacity() {
+            return minReadCapacity;
+        }
+
+        public void setMinReadCapacity(Integer minReadCapacity) {
+            this.minReadCapacity = minReadCapacity;
+        }
+
+        public Integer getMaxReadCapacity() {
+            return maxReadCapacity;
+        }
+
+        public void setMaxReadCapacity(Integer maxReadCapacity) {
+            this.maxReadCapacity = maxReadCapacity;
+        }
+
+        public Integer getMinWriteCapacity() {
+            return minWriteCapacity;
+        }
+
+        public void setMinWriteCapacity(Integer minWriteCapacity) {
+            this.minWriteCapacity = minWriteCapacity;
+        }
+
+        public Integer getMaxWriteCapacity() {
+            return maxWriteCapacity;
+        }
+
+        public void setMaxWriteCapacity(Integer maxWriteCapacity) {
+            this.maxWriteCapacity = maxWriteCapacity;
+        }
+
+        /**
+         * @return the read capacity floor between {@code DRILL_START} and {@code DRILL_END}.
+         */
+        public Integer getDrillReadCapacity() {
+            return drillReadCapacity;
+        }
+
+        public void setDrillReadCapacity(Integer drillReadCapacity) {
+            this.drillReadCapacity = drillReadCapacity;
+        }
+
+        /**
+         * @return the write capacity floor between {@code DRILL_START} and {@code DRILL_END}.
+         */
+        public Integer getDrillWriteCapacity() {
+            return drillWriteCapacity;
+        }
+
+        public void setDrillWriteCapacity(Integer drillWriteCapacity) {
+            this.drillWriteCapacity = drillWriteCapacity;
+        }
+
+        /**
+         * @return percent of consumed to provisioned capacity that target tracking keeps.
+         */
+        public Integer getTargetUtilization() {
+            return targetUtilization;
+        }
+
+        public void setTargetUtilization(Integer targetUtilization) {
+            this.targetUtilization = targetUtilization;
+        }
+    }
+}
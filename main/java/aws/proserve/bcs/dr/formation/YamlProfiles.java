@@ -0,0 +1,52 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Named profiles loaded from a YAML resource with a {@code defaults} entry. A name without an entry uses
+ * {@code defaults}, and a property an entry leaves out is taken from {@code defaults} by {@link #merge}.
+ *
+ * @param <P> the profile bean bound by SnakeYaml.
+ */
+public abstract class YamlProfiles<P> {
+    private final P defaults;
+    private final Map<String, P> entries;
+
+    protected YamlProfiles(Yaml yaml, String resource, Class<? extends Document<P>> documentType,
+                           Supplier<P> empty) {
+        final var stream = Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream(resource));
+        final Document<P> document = yaml.loadAs(stream, documentType);
+
+        this.defaults = document.getDefaults() == null ? empty.get() : document.getDefaults();
+        this.entries = document.getEntries() == null ? Map.of() : document.getEntries();
+    }
+
+    /**
+     * @return the profile of {@code name}, with unset properties taken from {@code defaults}.
+     */
+    public P profile(String name) {
+        return merge(entries.getOrDefault(name, defaults), defaults);
+    }
+
+    protected abstract P merge(P profile, P defaults);
+
+    protected static <T> T valueOf(T value, T defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * The root of a profile resource, whose entries are keyed by the name of a resource.
+     */
+    public interface Document<P> {
+        P getDefaults();
+
+        Map<String, P> getEntries();
+    }
+}
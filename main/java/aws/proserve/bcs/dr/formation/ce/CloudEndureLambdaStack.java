@@ -3,9 +3,10 @@
 
 package aws.proserve.bcs.dr.formation.ce;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -17,11 +18,14 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class CloudEndureLambdaStack extends LambdaStack {
+public class CloudEndureLambdaStack extends PortalLambdaStack {
 
     @Inject
-    CloudEndureLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-CloudEndure-Lambda", bucketStack);
+    CloudEndureLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-CloudEndure-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -48,11 +52,16 @@ public class CloudEndureLambdaStack extends LambdaStack {
         createFunction("PrepareProjectName");
     }
 
+    @Override
+    protected boolean usesSecrets() {
+        return true;
+    }
+
     private Function createFunction(String label) {
-        return createFunction(this, getRole(), label,
-                "DRPCloudEndure" + label,
-                String.format("aws.proserve.bcs.dr.ce.%s::handleRequest", label),
+        final var functionName = "DRPCloudEndure" + label;
+        return createFunction(label, functionName,
+                String.format("aws.proserve.bcs.dr.ce.%s", label),
                 String.format("Lambda to manage CloudEndure (%s), created by DRPortal", label),
-                getBucket(), S3Constants.LAMBDA_CE);
+                S3Constants.LAMBDA_CE);
     }
 }
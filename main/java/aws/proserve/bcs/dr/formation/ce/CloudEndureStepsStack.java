@@ -3,10 +3,12 @@
 
 package aws.proserve.bcs.dr.formation.ce;
 
-import aws.proserve.bcs.dr.formation.common.CommonLambdaStack;
-import aws.proserve.bcs.dr.formation.vpc.VpcLambdaStack;
+import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.dr.formation.PortalStepsStack;
+import aws.proserve.bcs.dr.formation.common.CommonDeployStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcDeployStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcStepsStack;
-import aws.proserve.bcs.formation.StepsStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.Duration;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
@@ -17,8 +19,12 @@ import software.amazon.awscdk.services.stepfunctions.Choice;
 import software.amazon.awscdk.services.stepfunctions.Condition;
 import software.amazon.awscdk.services.stepfunctions.IChainable;
 import software.amazon.awscdk.services.stepfunctions.IntegrationPattern;
+import software.amazon.awscdk.services.stepfunctions.JsonPath;
+import software.amazon.awscdk.services.stepfunctions.Pass;
+import software.amazon.awscdk.services.stepfunctions.Result;
 import software.amazon.awscdk.services.stepfunctions.StateMachine;
 import software.amazon.awscdk.services.stepfunctions.TaskInput;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoAttributeValue;
 import software.amazon.awscdk.services.stepfunctions.tasks.StepFunctionsStartExecution;
 
 import javax.inject.Inject;
@@ -28,22 +34,29 @@ import java.util.List;
 import java.util.Map;
 
 @Singleton
-public class CloudEndureStepsStack extends StepsStack {
+public class CloudEndureStepsStack extends PortalStepsStack {
+    /**
+     * How a private network project is connected to the common VPC, {@code peering} or {@code transit}.
+     * Projects created before it was recorded are peered.
+     */
+    private static final String ATTR_CONNECTION = "connection";
+    private static final String CONNECTION_PEERING = "peering";
+    private static final String CONNECTION_TRANSIT = "transit";
 
     private int counter;
 
     @Inject
     CloudEndureStepsStack(
             App app,
-            CommonLambdaStack commonLambdaStack,
-            VpcLambdaStack vpcLambdaStack,
+            CommonDeployStack commonDeployStack,
+            VpcDeployStack vpcDeployStack,
             VpcStepsStack vpcStepsStack,
-            CloudEndureLambdaStack lambdaStack) {
+            CloudEndureDeployStack deployStack) {
         super(app, "DRPortal-CloudEndure-Steps");
 
-        mergeFunctionMap(commonLambdaStack.getFunctionMap());
-        mergeFunctionMap(vpcLambdaStack.getFunctionMap());
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(commonDeployStack.getAliasMap());
+        mergeFunctionMap(vpcDeployStack.getAliasMap());
+        mergeFunctionMap(deployStack.getAliasMap());
 
         final var role = Role.Builder
                 .create(this, "Role")
@@ -113,19 +126,24 @@ public class CloudEndureStepsStack extends StepsStack {
                         .next(f("CreatePortalProject"))));
     }
 
+    /**
+     * Reads and deletes the project from the table directly, without the lambda functions. The project is read as
+     * DynamoDB JSON, where attributes the mapper left out are missing, so each path is checked before use.
+     */
     private Chain deleteCloudEndureProject() {
-        final var deleteProject = fInput("DeleteProject", "$.id");
+        final var deleteProject = deleteItem("DeleteProject", DynamoConstants.TABLE_PROJECT, "$.id");
         final var deleteCutover = fTaskDiscard("DeleteEndureProject", "DeleteCutoverProject",
-                "$.result.project.cloudEndureProject.items[0].id");
+                Input.ITEMS + "[0].M.id.S");
         final var deleteCutback = fTaskDiscard("DeleteEndureProject", "DeleteCutbackProject",
-                "$.result.project.cloudEndureProject.items[1].id");
+                Input.ITEMS + "[1].M.id.S");
         final var shouldDeletePeerRoute = shouldDeletePeerVpc(deleteProject);
 
         deleteCutback.next(deleteCutover).next(shouldDeletePeerRoute);
-        return Chain.start(f("FindProject", "$.id", "$.result"))
-                .next(new Choice(this, "itemSize")
-                        .when(Condition.numberEquals("$.result.itemSize", 1), deleteCutover)
-                        .when(Condition.numberEquals("$.result.itemSize", 2), deleteCutback)
+        return Chain.start(getItem("FindProject", DynamoConstants.TABLE_PROJECT, "$.id", "$.item"))
+                .next(new Choice(this, "IsProjectFound")
+                        .when(Condition.not(Condition.isPresent(Input.PROJECT)), fail("ProjectNotFoundException"))
+                        .when(Condition.isPresent(Input.ITEMS + "[1]"), deleteCutback)
+                        .when(Condition.isPresent(Input.ITEMS + "[0]"), deleteCutover)
                         .otherwise(shouldDeletePeerRoute));
     }
 
@@ -200,25 +218,93 @@ public class CloudEndureStepsStack extends StepsStack {
                 .otherwise(next);
     }
 
+    /**
+     * Connects the project VPC to the common VPC through the transit gateway if there is one, otherwise by peering.
+     * A VPC attaches only to a transit gateway of its region, so projects targeting another region are peered.
+     * The connection is kept in {@code $.connection} and recorded on the project once it is created.
+     */
     private Choice shouldAddPeerVpc(IChainable next) {
-        return new Choice(this, "ShouldAddPeerVpc")
-                .when(Condition.booleanEquals("$.publicNetwork", true), next)
-                .otherwise(fDiscard("PeerVpc")
-                        .next(fDiscard("AddPeerRoute"))
-                        .next(next));
+        final var choice = new Choice(this, "ShouldAddPeerVpc")
+                .when(Condition.booleanEquals("$.publicNetwork", true), next);
+
+        final var region = System.getenv("REGION");
+        if (VpcStack.isTransitGatewayEnabled() && region != null) {
+            choice.when(Condition.stringEquals("$.targetRegion", region),
+                    fDiscard("AttachTransitGateway")
+                            .next(fDiscard("AddTransitRoute"))
+                            .next(connection("TransitConnection", CONNECTION_TRANSIT))
+                            .next(next));
+        }
+
+        return choice.otherwise(fDiscard("PeerVpc")
+                .next(fDiscard("AddPeerRoute"))
+                .next(connection("PeerConnection", CONNECTION_PEERING))
+                .next(next));
+    }
+
+    private Pass connection(String id, String connection) {
+        return Pass.Builder
+                .create(this, id)
+                .result(Result.fromString(connection))
+                .resultPath("$.connection")
+                .build();
     }
 
+    /**
+     * Records {@code $.connection} on the project created by {@code CreateCloudEndureProject}, whose id is the
+     * output of the execution as a JSON string.
+     */
+    private Choice shouldRecordConnection(IChainable next) {
+        final var createdProject = Pass.Builder
+                .create(this, "CreatedProject")
+                .parameters(Map.of("id.$", "States.StringToJson($.createCloudEndureProjectOutput.Output)"))
+                .resultPath("$.createdProject")
+                .build();
+        createdProject
+                .next(updateItem("RecordConnection", DynamoConstants.TABLE_PROJECT, "$.createdProject.id",
+                        "SET #connection = :connection",
+                        Map.of("#connection", ATTR_CONNECTION),
+                        Map.of(":connection", DynamoAttributeValue.fromString(JsonPath.stringAt("$.connection")))))
+                .next(next);
+
+        return new Choice(this, "ShouldRecordConnection")
+                .when(Condition.isPresent("$.connection"), createdProject)
+                .otherwise(next);
+    }
+
+    /**
+     * The mapper stores {@code publicNetwork} as a number, older items may have it as a boolean. Projects are
+     * detached from the transit gateway only if they recorded the {@code transit} connection.
+     */
     private Choice shouldDeletePeerVpc(IChainable next) {
+        final var publicNetwork = Input.PROJECT + ".cloudEndureProject.M.publicNetwork";
         final Map<String, Object> unpeerVpc = Map.of(
-                "sourceVpcId.$", "$.result.project.cloudEndureProject.sourceVpcId",
-                "sourceRegion.$", "$.result.project.sourceRegion.name",
-                "targetRegion.$", "$.result.project.targetRegion.name",
-                "projectId.$", "$.result.project.id");
-        return new Choice(this, "ShouldDeletePeerVpc")
-                .when(Condition.booleanEquals("$.result.project.cloudEndureProject.publicNetwork", true), next)
-                .otherwise(fDiscard("DeletePeerRoute", unpeerVpc)
-                        .next(fDiscard("UnpeerVpc", unpeerVpc))
-                        .next(next));
+                "sourceVpcId.$", Input.PROJECT + ".cloudEndureProject.M.sourceVpcId.S",
+                "sourceRegion.$", Input.PROJECT + ".sourceRegion.M.name.S",
+                "targetRegion.$", Input.PROJECT + ".targetRegion.M.name.S",
+                "projectId.$", Input.PROJECT + ".id.S");
+        final var connection = Input.PROJECT + "." + ATTR_CONNECTION + ".S";
+        final var choice = new Choice(this, "ShouldDeletePeerVpc")
+                .when(Condition.or(
+                        Condition.and(
+                                Condition.isPresent(publicNetwork + ".N"),
+                                Condition.stringEquals(publicNetwork + ".N", "1")),
+                        Condition.and(
+                                Condition.isPresent(publicNetwork + ".BOOL"),
+                                Condition.booleanEquals(publicNetwork + ".BOOL", true))), next);
+
+        if (VpcStack.isTransitGatewayEnabled()) {
+            choice.when(Condition.and(
+                    Condition.isPresent(connection),
+                    Condition.stringEquals(connection, CONNECTION_TRANSIT)),
+                    fDiscard("DeleteTransitRoute", unpeerVpc)
+                            .next(fDiscard("DetachTransitGateway", unpeerVpc))
+                            .next(next));
+        }
+
+        return choice.otherwise(fDiscard("DeletePeerRoute", unpeerVpc)
+                .next(fDiscard("UnpeerVpc", unpeerVpc))
+                .next(next));
     }
 
     private Chain runWizard(StateMachine createCloudEndureProjectMachine, StateMachine replicateVpcMachine) {
@@ -250,10 +336,17 @@ public class CloudEndureStepsStack extends StepsStack {
                                 .next(vpcReplicated(replicateVpcMachine,
                                         f("FindCommonSubnet", "$.stagingSubnetId")
                                                 .next(shouldAddPeerVpc(createCloudEndureProject
-                                                        .next(f("InstallAgent", "$.agentInstalled", Input.installAgent)))))))));
+                                                        .next(shouldRecordConnection(
+                                                                f("InstallAgent", "$.agentInstalled", Input.installAgent))))))))));
     }
 
     private static class Input {
+        /**
+         * The project read by {@code FindProject}, as DynamoDB JSON.
+         */
+        private static final String PROJECT = "$.item.Item";
+        private static final String ITEMS = PROJECT + ".cloudEndureProject.M.items.L";
+
         private static final Map<String, Object> findCommonSubnet = Map.of(
                 "projectId.$", "$.project.id",
                 "publicNetwork.$", "$.project.cloudEndureProject.publicNetwork",
@@ -5,28 +5,38 @@ package aws.proserve.bcs.dr.formation.cem;
 
 import aws.proserve.bcs.dr.cem.CemConstants;
 import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.dr.formation.TableProfiles;
+import aws.proserve.bcs.dr.formation.dynamo.DynamoDbStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
-import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
+import software.amazon.awscdk.services.dynamodb.StreamViewType;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.dynamodb.TableEncryption;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.List;
 
 @Singleton
 public class CemStack extends Stack {
+    public static final String INDEX_MACHINE_ID = "machineId-index";
+
+    private final Table blueprintTable;
 
     @Inject
-    CemStack(App app) {
+    CemStack(App app, TableProfiles profiles) {
         super(app, "DRPortal-Cem");
 
-        Table.Builder
+        this.blueprintTable = Table.Builder
                 .create(this, "BlueprintTable")
-                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .billingMode(profiles.billingMode(CemConstants.TABLE_BLUEPRINT))
+                .readCapacity(profiles.readCapacity(CemConstants.TABLE_BLUEPRINT))
+                .writeCapacity(profiles.writeCapacity(CemConstants.TABLE_BLUEPRINT))
                 .tableName(CemConstants.TABLE_BLUEPRINT)
                 .partitionKey(Attribute.builder()
                         .name(DynamoConstants.KEY_ID)
@@ -36,9 +46,27 @@ public class CemStack extends Stack {
                         .name(CemConstants.KEY_MACHINE_ID)
                         .type(AttributeType.STRING)
                         .build())
+                .timeToLiveAttribute(DynamoDbStack.ATTR_EXPIRE_TIME)
+                .stream(StreamViewType.NEW_AND_OLD_IMAGES)
+                .replicationRegions(DynamoDbStack.replicaRegions())
                 .pointInTimeRecovery(true)
                 .encryption(TableEncryption.AWS_MANAGED)
                 .removalPolicy(RemovalPolicy.DESTROY)
                 .build();
+
+        // finds the blueprints of a machine without knowing the project.
+        blueprintTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName(INDEX_MACHINE_ID)
+                .partitionKey(Attribute.builder()
+                        .name(CemConstants.KEY_MACHINE_ID)
+                        .type(AttributeType.STRING)
+                        .build())
+                .projectionType(ProjectionType.KEYS_ONLY)
+                .build());
+        profiles.apply(blueprintTable, CemConstants.TABLE_BLUEPRINT, List.of(INDEX_MACHINE_ID));
+    }
+
+    public Table getBlueprintTable() {
+        return blueprintTable;
     }
 }
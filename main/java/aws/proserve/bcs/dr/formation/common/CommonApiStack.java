@@ -3,22 +3,39 @@
 
 package aws.proserve.bcs.dr.formation.common;
 
+import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.dr.formation.Keys;
 import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Duration;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.services.apigateway.AccessLogFormat;
+import software.amazon.awscdk.services.apigateway.ApiKeyOptions;
 import software.amazon.awscdk.services.apigateway.AuthorizationType;
+import software.amazon.awscdk.services.apigateway.AwsIntegration;
 import software.amazon.awscdk.services.apigateway.EndpointConfiguration;
 import software.amazon.awscdk.services.apigateway.EndpointType;
+import software.amazon.awscdk.services.apigateway.IntegrationOptions;
+import software.amazon.awscdk.services.apigateway.IntegrationResponse;
 import software.amazon.awscdk.services.apigateway.LambdaIntegration;
 import software.amazon.awscdk.services.apigateway.LogGroupLogDestination;
+import software.amazon.awscdk.services.apigateway.MethodDeploymentOptions;
 import software.amazon.awscdk.services.apigateway.MethodLoggingLevel;
 import software.amazon.awscdk.services.apigateway.MethodOptions;
+import software.amazon.awscdk.services.apigateway.MethodResponse;
+import software.amazon.awscdk.services.apigateway.PassthroughBehavior;
+import software.amazon.awscdk.services.apigateway.RequestValidator;
 import software.amazon.awscdk.services.apigateway.RestApi;
 import software.amazon.awscdk.services.apigateway.StageOptions;
+import software.amazon.awscdk.services.apigateway.ThrottleSettings;
+import software.amazon.awscdk.services.apigateway.UsagePlanPerApiStage;
+import software.amazon.awscdk.services.apigateway.UsagePlanProps;
+import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.iam.PolicyDocument;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.RetentionDays;
 
@@ -29,6 +46,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,22 +55,54 @@ import java.util.stream.Collectors;
 
 @Singleton
 public class CommonApiStack extends Stack {
+    private static final String DEFAULT_CACHE_SIZE = "0.5";
+    private static final int DEFAULT_PROJECT_CACHE_TTL = 5;
+    private static final int DEFAULT_THROTTLE_RATE = 500;
+    private static final int DEFAULT_THROTTLE_BURST = 1000;
+    private static final int DEFAULT_METHOD_THROTTLE_RATE = 100;
+    private static final int DEFAULT_METHOD_THROTTLE_BURST = 200;
+    private static final int DEFAULT_BATCH_THROTTLE_RATE = 20;
+    private static final int DEFAULT_BATCH_THROTTLE_BURST = 40;
+    private static final int MINIMUM_COMPRESSION_SIZE = 1024;
 
     @Inject
     CommonApiStack(
             App app,
             ObjectMapper objectMapper,
             VpcStack vpcStack,
-            CommonLambdaStack lambdaStack) {
+            CommonDeployStack deployStack) {
         super(app, "DRPortal-Common-Api");
 
         final var stage = "latest";
-        final var functionMap = lambdaStack.getFunctionMap();
+        final var cacheSize = System.getenv(Keys.API_CACHE_SIZE);
+        final var projectCacheTtlValue = System.getenv(Keys.PROJECT_CACHE_TTL);
+        final var projectCacheTtl = projectCacheTtlValue == null
+                ? DEFAULT_PROJECT_CACHE_TTL : Integer.parseInt(projectCacheTtlValue);
+        final var cached = projectCacheTtl > 0;
+        final var throttleRate = System.getenv(Keys.API_THROTTLE_RATE);
+        final var throttleBurst = System.getenv(Keys.API_THROTTLE_BURST);
+        final var apiKeyRequired = Boolean.parseBoolean(System.getenv(Keys.API_KEY_REQUIRED));
+        // invoke the prod aliases, which may carry provisioned concurrency.
+        final var aliasMap = deployStack.getAliasMap();
 
-        final var stream = Objects.requireNonNull(getClass().getClassLoader()
-                .getResourceAsStream("aws/proserve/bcs/dr/formation/common/CommonApiPolicy.json"));
-        final var documentContent = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
-                .lines().collect(Collectors.joining(System.lineSeparator()));
+        // writes hit the lambda functions and DynamoDB, so they are throttled below reads.
+        final var methodOptions = new HashMap<String, MethodDeploymentOptions>();
+        methodOptions.put("/projects/{id}/GET", MethodDeploymentOptions.builder()
+                .cachingEnabled(cached)
+                .cacheTtl(Duration.seconds(projectCacheTtl))
+                .build());
+        methodOptions.put("/projects/GET", throttle(Keys.API_READ_THROTTLE_RATE, Keys.API_READ_THROTTLE_BURST,
+                DEFAULT_METHOD_THROTTLE_RATE, DEFAULT_METHOD_THROTTLE_BURST));
+        methodOptions.put("/projects/{id}/items/{itemId}/PUT",
+                throttle(Keys.API_WRITE_THROTTLE_RATE, Keys.API_WRITE_THROTTLE_BURST,
+                        DEFAULT_METHOD_THROTTLE_RATE, DEFAULT_METHOD_THROTTLE_BURST));
+        if (isBatchUpdateEnabled()) {
+            methodOptions.put("/projects/{id}/items/batchUpdate/POST",
+                    throttle(Keys.API_BATCH_THROTTLE_RATE, Keys.API_BATCH_THROTTLE_BURST,
+                            DEFAULT_BATCH_THROTTLE_RATE, DEFAULT_BATCH_THROTTLE_BURST));
+        }
+
+        final var documentContent = resource("CommonApiPolicy.json");
         final Map<String, Object> policy;
         try {
             policy = objectMapper.readValue(String.format(documentContent, vpcStack.getVpc().getVpcId()), Map.class);
@@ -69,7 +120,10 @@ public class CommonApiStack extends Stack {
                         .build())
                 .defaultMethodOptions(MethodOptions.builder()
                         .authorizationType(AuthorizationType.NONE)
+                        .apiKeyRequired(apiKeyRequired)
                         .build())
+                // project documents compress well, small responses are not worth the CPU.
+                .minimumCompressionSize(MINIMUM_COMPRESSION_SIZE)
                 .deployOptions(StageOptions.builder()
                         .stageName(stage)
                         .accessLogFormat(AccessLogFormat.jsonWithStandardFields())
@@ -81,24 +135,143 @@ public class CommonApiStack extends Stack {
                                         .build()))
                         .loggingLevel(MethodLoggingLevel.INFO)
                         .metricsEnabled(true)
+                        .throttlingRateLimit(throttleRate == null
+                                ? DEFAULT_THROTTLE_RATE : Integer.parseInt(throttleRate))
+                        .throttlingBurstLimit(throttleBurst == null
+                                ? DEFAULT_THROTTLE_BURST : Integer.parseInt(throttleBurst))
+                        // the cluster is billed by the hour, so it only runs if projects are cached at all.
+                        // callers in the VPC may invalidate an entry with Cache-Control: max-age=0 after a PUT.
+                        .cacheClusterEnabled(cached)
+                        .cacheClusterSize(!cached ? null : cacheSize == null ? DEFAULT_CACHE_SIZE : cacheSize)
+                        .methodOptions(methodOptions)
                         .build())
                 .policy(PolicyDocument.fromJson(policy))
                 .build();
 
-        final var project = commonApi.getRoot()
-                .addResource("projects")
-                .addResource("{id}");
+        final var table = Table.fromTableName(this, "ProjectTable", DynamoConstants.TABLE_PROJECT);
+        final var readRole = Role.Builder
+                .create(this, "BatchGetProjectsRole")
+                .assumedBy(new ServicePrincipal("apigateway.amazonaws.com"))
+                .build();
+        table.grantReadData(readRole);
+
+        final var projects = commonApi.getRoot().addResource("projects");
+        final var project = projects.addResource("{id}");
 
+        // the function converts projects of any depth from DynamoDB JSON, the stage cache spares it the polls.
         project.addMethod("GET",
                 LambdaIntegration.Builder
-                        .create(functionMap.get("ApiFindProjectById"))
+                        .create(aliasMap.get("ApiFindProjectById"))
+                        .cacheKeyParameters(List.of("method.request.path.id"))
+                        .build(),
+                MethodOptions.builder()
+                        .requestParameters(Map.of("method.request.path.id", true))
+                        .build());
+
+        // a batch read returns DynamoDB JSON, a mapping template cannot convert nested values of any depth.
+        projects.addMethod("GET", dynamoIntegration(readRole, "BatchGetItem",
+                String.format(resource("FindProjectsRequest.vtl"), DynamoConstants.TABLE_PROJECT, DynamoConstants.KEY_ID),
+                String.format(resource("FindProjectsResponse.vtl"),
+                        DynamoConstants.TABLE_PROJECT, DynamoConstants.TABLE_PROJECT, DynamoConstants.KEY_ID)),
+                MethodOptions.builder()
+                        .requestParameters(Map.of("method.request.querystring.ids", true))
+                        .requestValidator(RequestValidator.Builder
+                                .create(this, "ParametersValidator")
+                                .restApi(commonApi)
+                                .validateRequestParameters(true)
+                                .build())
+                        .methodResponses(methodResponses("200", "400", "500"))
                         .build());
 
-        project.addResource("items")
-                .addResource("{itemId}")
+        final var items = project.addResource("items");
+        items.addResource("{itemId}")
                 .addMethod("PUT",
                         LambdaIntegration.Builder
-                                .create(functionMap.get("ApiUpdateItemState"))
+                                .create(aliasMap.get("ApiUpdateItemState"))
                                 .build());
+
+        // ":" is not allowed in a path part, so the batch is a sub resource instead of items:batchUpdate.
+        if (isBatchUpdateEnabled()) {
+            items.addResource("batchUpdate")
+                    .addMethod("POST",
+                            LambdaIntegration.Builder
+                                    .create(aliasMap.get("ApiBatchUpdateItemState"))
+                                    .build());
+        }
+
+        // the portal server is interactive, workers of state machines fan out and must not starve it.
+        // plans only throttle requests that carry their key, which API_KEY_REQUIRED=true enforces.
+        addUsagePlan(commonApi, "Portal", 200, 400);
+        addUsagePlan(commonApi, "Worker", 100, 200);
+    }
+
+    public static boolean isBatchUpdateEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.API_BATCH_UPDATE));
+    }
+
+    private void addUsagePlan(RestApi api, String callerClass, int rate, int burst) {
+        final var plan = api.addUsagePlan(callerClass + "UsagePlan", UsagePlanProps.builder()
+                .name("CommonApi-" + callerClass)
+                .throttle(ThrottleSettings.builder()
+                        .rateLimit(rate)
+                        .burstLimit(burst)
+                        .build())
+                .apiStages(List.of(UsagePlanPerApiStage.builder()
+                        .api(api)
+                        .stage(api.getDeploymentStage())
+                        .build()))
+                .build());
+        plan.addApiKey(api.addApiKey(callerClass + "ApiKey", ApiKeyOptions.builder()
+                .apiKeyName("CommonApi-" + callerClass)
+                .build()));
+    }
+
+    private MethodDeploymentOptions throttle(String rateKey, String burstKey, int defaultRate, int defaultBurst) {
+        final var rate = System.getenv(rateKey);
+        final var burst = System.getenv(burstKey);
+        return MethodDeploymentOptions.builder()
+                .throttlingRateLimit(rate == null ? defaultRate : Integer.parseInt(rate))
+                .throttlingBurstLimit(burst == null ? defaultBurst : Integer.parseInt(burst))
+                .build();
+    }
+
+    private AwsIntegration dynamoIntegration(Role role, String action, String requestTemplate,
+                                             String responseTemplate) {
+        return AwsIntegration.Builder
+                .create()
+                .service("dynamodb")
+                .action(action)
+                .options(IntegrationOptions.builder()
+                        .credentialsRole(role)
+                        .passthroughBehavior(PassthroughBehavior.NEVER)
+                        .requestTemplates(Map.of("application/json", requestTemplate))
+                        .integrationResponses(List.of(
+                                IntegrationResponse.builder()
+                                        .statusCode("200")
+                                        .responseTemplates(Map.of("application/json", responseTemplate))
+                                        .build(),
+                                IntegrationResponse.builder()
+                                        .selectionPattern("400")
+                                        .statusCode("400")
+                                        .build(),
+                                IntegrationResponse.builder()
+                                        .selectionPattern("(401|403|5\\d{2})")
+                                        .statusCode("500")
+                                        .build()))
+                        .build())
+                .build();
+    }
+
+    private List<MethodResponse> methodResponses(String... statusCodes) {
+        return Arrays.stream(statusCodes)
+                .map(code -> MethodResponse.builder().statusCode(code).build())
+                .collect(Collectors.toList());
+    }
+
+    private String resource(String name) {
+        final var stream = Objects.requireNonNull(getClass().getClassLoader()
+                .getResourceAsStream("aws/proserve/bcs/dr/formation/common/" + name));
+        return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
+                .lines().collect(Collectors.joining(System.lineSeparator()));
     }
 }
@@ -3,8 +3,12 @@
 
 package aws.proserve.bcs.dr.formation.common;
 
+import aws.proserve.bcs.dr.formation.FunctionProfiles;
+import aws.proserve.bcs.dr.formation.Keys;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingSchedule;
+import software.amazon.awscdk.services.applicationautoscaling.Schedule;
 import software.amazon.awscdk.services.codedeploy.LambdaApplication;
 import software.amazon.awscdk.services.codedeploy.LambdaDeploymentConfig;
 import software.amazon.awscdk.services.codedeploy.LambdaDeploymentGroup;
@@ -12,17 +16,25 @@ import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.lambda.Alias;
+import software.amazon.awscdk.services.lambda.AutoScalingOptions;
+import software.amazon.awscdk.services.lambda.IFunction;
+import software.amazon.awscdk.services.lambda.UtilizationScalingOptions;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class CommonDeployStack extends Stack {
+    private static final double UTILIZATION_TARGET = 0.7;
+
+    private final Map<String, IFunction> aliasMap = new HashMap<>();
 
     @Inject
-    CommonDeployStack(App app, CommonLambdaStack lambdaStack) {
+    CommonDeployStack(App app, CommonLambdaStack lambdaStack, FunctionProfiles profiles) {
         super(app, "DRPortal-Common-CodeDeploy");
 
         // cannot reuse the role, a bug in cdk, duplicated managed policies
@@ -41,18 +53,66 @@ public class CommonDeployStack extends Stack {
         final var functionMap = lambdaStack.getFunctionMap();
 
         for (var entry : functionMap.entrySet()) {
+            final var profile = profiles.profile(CommonLambdaStack.PREFIX + entry.getKey());
+            final var alias = Alias.Builder
+                    .create(this, entry.getKey() + "ProdAlias")
+                    .aliasName("prod")
+                    .version(entry.getValue().addVersion(Instant.now().toString()))
+                    .provisionedConcurrentExecutions(profile.getProvisionedConcurrency())
+                    .build();
+            aliasMap.put(entry.getKey(), alias);
+
+            if (profile.getProvisionedConcurrency() != null) {
+                scaleProvisionedConcurrency(entry.getKey(), alias,
+                        profile.getProvisionedConcurrency(), profile.getDrillProvisionedConcurrency());
+            }
+
             LambdaDeploymentGroup.Builder
                     .create(this, entry.getKey() + "DeploymentGroup")
                     // .role(role)
                     .deploymentGroupName(entry.getKey())
                     .application(application)
                     .deploymentConfig(LambdaDeploymentConfig.CANARY_10_PERCENT_5_MINUTES)
-                    .alias(Alias.Builder
-                            .create(this, entry.getKey() + "ProdAlias")
-                            .aliasName("prod")
-                            .version(entry.getValue().addVersion(Instant.now().toString()))
-                            .build())
+                    .alias(alias)
                     .build();
         }
     }
+
+    /**
+     * Tracks utilization between the baseline and the drill capacity, and raises the floor to the drill capacity
+     * between {@code DRILL_START} and {@code DRILL_END}, both being application auto scaling schedule expressions
+     * such as {@code cron(0 1 ? * SAT *)}.
+     */
+    private void scaleProvisionedConcurrency(String label, Alias alias, int baseline, Integer drill) {
+        final var max = drill == null ? baseline : Math.max(baseline, drill);
+        final var scaling = alias.addAutoScaling(AutoScalingOptions.builder()
+                .minCapacity(baseline)
+                .maxCapacity(max)
+                .build());
+        scaling.scaleOnUtilization(UtilizationScalingOptions.builder()
+                .utilizationTarget(UTILIZATION_TARGET)
+                .build());
+
+        final var start = System.getenv(Keys.DRILL_START);
+        final var end = System.getenv(Keys.DRILL_END);
+        if (drill == null || start == null || end == null) {
+            return;
+        }
+
+        scaling.scaleOnSchedule(label + "DrillStart", ScalingSchedule.builder()
+                .schedule(Schedule.expression(start))
+                .minCapacity(max)
+                .build());
+        scaling.scaleOnSchedule(label + "DrillEnd", ScalingSchedule.builder()
+                .schedule(Schedule.expression(end))
+                .minCapacity(baseline)
+                .build());
+    }
+
+    /**
+     * @return the {@code prod} aliases keyed by function label.
+     */
+    public Map<String, IFunction> getAliasMap() {
+        return aliasMap;
+    }
 }
@@ -3,9 +3,11 @@
 
 package aws.proserve.bcs.dr.formation.common;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -17,11 +19,15 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class CommonLambdaStack extends LambdaStack {
+public class CommonLambdaStack extends PortalLambdaStack {
+    static final String PREFIX = "DRPCommon";
 
     @Inject
-    CommonLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-Common-Lambda", bucketStack);
+    CommonLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-Common-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -47,13 +53,29 @@ public class CommonLambdaStack extends LambdaStack {
         createFunction("network", "FindCommonSubnet");
         createFunction("network", "PeerVpc");
         createFunction("network", "UnpeerVpc");
+
+        if (VpcStack.isTransitGatewayEnabled()) {
+            createFunction("network", "AddTransitRoute");
+            createFunction("network", "AttachTransitGateway");
+            createFunction("network", "DeleteTransitRoute");
+            createFunction("network", "DetachTransitGateway");
+        }
+
+        if (CommonApiStack.isBatchUpdateEnabled()) {
+            createFunction("project", "ApiBatchUpdateItemState");
+        }
+    }
+
+    @Override
+    protected boolean usesSecrets() {
+        return true;
     }
 
     private Function createFunction(String pkg, String label) {
-        return createFunction(this, getRole(), label,
-                "DRPCommon" + label,
-                "aws.proserve.bcs.dr.lambda." + pkg + "." + label + "::handleRequest",
+        final var functionName = PREFIX + label;
+        return createFunction(label, functionName,
+                "aws.proserve.bcs.dr.lambda." + pkg + "." + label,
                 "Common functions, created by DRPortal",
-                getBucket(), S3Constants.LAMBDA_COMMON);
+                S3Constants.LAMBDA_COMMON);
     }
 }
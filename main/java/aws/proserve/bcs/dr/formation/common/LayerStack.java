@@ -0,0 +1,97 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation.common;
+
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.RemovalPolicy;
+import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.lambda.Code;
+import software.amazon.awscdk.services.lambda.ILayerVersion;
+import software.amazon.awscdk.services.lambda.LayerVersion;
+import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.ssm.StringParameter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+
+/**
+ * Publishes the jars shared by all lambda bundles as layers, so that each bundle only carries its handler code.
+ * The layer zips are produced by {@code bash/build.sh} and copied to the bucket before this stack is deployed.
+ * <p>
+ * Functions find the layers through {@link #PARAM_SDK} and {@link #PARAM_RUNTIME} rather than stack exports,
+ * which could not change to a new layer version while functions import them.
+ */
+@Singleton
+public class LayerStack extends Stack {
+    public static final String LAYER_SDK = "lambda/layer/sdk";
+    public static final String LAYER_RUNTIME = "lambda/layer/runtime";
+    public static final String PARAM_SDK = "/drportal/layer/sdk";
+    public static final String PARAM_RUNTIME = "/drportal/layer/runtime";
+
+    /**
+     * The jars in the layers target Java 8, so they load on every Java runtime that {@code LambdaStack} may use.
+     */
+    public static final List<Runtime> RUNTIMES = List.of(Runtime.JAVA_8, Runtime.JAVA_8_CORRETTO, Runtime.JAVA_11);
+
+    @Inject
+    LayerStack(App app, BucketStack bucketStack) {
+        super(app, "DRPortal-Common-Layer");
+
+        final var bucket = bucketStack.getBucket();
+        final var sdk = LayerVersion.Builder
+                .create(this, "SdkLayer")
+                .layerVersionName("DRPSdkLayer")
+                .description("AWS SDK shared by lambda functions, created by DRPortal")
+                .code(Code.fromBucket(bucket, key(LAYER_SDK, Keys.LAYER_SDK_HASH)))
+                .compatibleRuntimes(RUNTIMES)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+        final var runtime = LayerVersion.Builder
+                .create(this, "RuntimeLayer")
+                .layerVersionName("DRPRuntimeLayer")
+                .description("Jackson, Dagger and logging shared by lambda functions, created by DRPortal")
+                .code(Code.fromBucket(bucket, key(LAYER_RUNTIME, Keys.LAYER_RUNTIME_HASH)))
+                .compatibleRuntimes(RUNTIMES)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+
+        StringParameter.Builder
+                .create(this, "SdkLayerArn")
+                .parameterName(PARAM_SDK)
+                .stringValue(sdk.getLayerVersionArn())
+                .build();
+        StringParameter.Builder
+                .create(this, "RuntimeLayerArn")
+                .parameterName(PARAM_RUNTIME)
+                .stringValue(runtime.getLayerVersionArn())
+                .build();
+    }
+
+    /**
+     * @return the current layer versions, imported into {@code scope} which must call this only once.
+     */
+    public List<ILayerVersion> getLayers(Stack scope) {
+        scope.addDependency(this);
+        return List.of(
+                LayerVersion.fromLayerVersionArn(scope, "SdkLayer",
+                        StringParameter.valueForStringParameter(scope, PARAM_SDK)),
+                LayerVersion.fromLayerVersionArn(scope, "RuntimeLayer",
+                        StringParameter.valueForStringParameter(scope, PARAM_RUNTIME)));
+    }
+
+    /**
+     * A fixed key would keep the layer version when the zip is rebuilt, as the properties of the layer are unchanged.
+     */
+    private static String key(String prefix, String hashKey) {
+        final var hash = System.getenv(hashKey);
+        return hash == null ? prefix + ".zip" : prefix + "-" + hash + ".zip";
+    }
+
+    public static boolean isCompatible(Runtime runtime) {
+        return RUNTIMES.stream().anyMatch(runtime::runtimeEquals);
+    }
+}
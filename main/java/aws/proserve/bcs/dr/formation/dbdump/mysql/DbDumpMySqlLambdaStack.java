@@ -3,9 +3,10 @@
 
 package aws.proserve.bcs.dr.formation.dbdump.mysql;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -17,11 +18,14 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class DbDumpMySqlLambdaStack extends LambdaStack {
+public class DbDumpMySqlLambdaStack extends PortalLambdaStack {
 
     @Inject
-    DbDumpMySqlLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-DbDump-MySql-Lambda", bucketStack);
+    DbDumpMySqlLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-DbDump-MySql-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -43,10 +47,10 @@ public class DbDumpMySqlLambdaStack extends LambdaStack {
     }
 
     private Function createFunction(String label) {
-        return createFunction(this, getRole(), label,
-                "DRPDbDumpMySql" + label,
-                String.format("aws.proserve.bcs.dr.dbdump.mysql.%s::handleRequest", label),
+        final var functionName = "DRPDbDumpMySql" + label;
+        return createFunction(label, functionName,
+                String.format("aws.proserve.bcs.dr.dbdump.mysql.%s", label),
                 String.format("Lambda to dump MySql/MariaDB (%s), created by DRPortal", label),
-                getBucket(), S3Constants.LAMBDA_DBDUMP_MYSQL);
+                S3Constants.LAMBDA_DBDUMP_MYSQL);
     }
 }
@@ -27,7 +27,7 @@ public class DbDumpMySqlStepsStack extends StepsStack {
             DbDumpMySqlLambdaStack lambdaStack) {
         super(app, "DRPortal-DbDump-MySql-Steps");
 
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(lambdaStack.getVersionMap());
         final var role = Role.Builder
                 .create(this, "Role")
                 .assumedBy(new ServicePrincipal("states.amazonaws.com"))
@@ -3,9 +3,10 @@
 
 package aws.proserve.bcs.dr.formation.dbreplica.oracle;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -17,11 +18,14 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class DbReplicaOracleLambdaStack extends LambdaStack {
+public class DbReplicaOracleLambdaStack extends PortalLambdaStack {
 
     @Inject
-    DbReplicaOracleLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-DbReplica-Oracle-Lambda", bucketStack);
+    DbReplicaOracleLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-DbReplica-Oracle-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -60,11 +64,16 @@ public class DbReplicaOracleLambdaStack extends LambdaStack {
         createFunction("TestSyncAgain");
     }
 
+    @Override
+    protected boolean usesSecrets() {
+        return true;
+    }
+
     private Function createFunction(String label) {
-        return createFunction(this, getRole(), label,
-                "DRPDbReplicaOracle" + label,
-                String.format("aws.proserve.bcs.dr.ce.%s::handleRequest", label),
+        final var functionName = "DRPDbReplicaOracle" + label;
+        return createFunction(label, functionName,
+                String.format("aws.proserve.bcs.dr.ce.%s", label),
                 String.format("Lambda to manage Oracle DataGuard (%s), created by DRF", label),
-                getBucket(), S3Constants.LAMBDA_DBREPLICA_ORACLE);
+                S3Constants.LAMBDA_DBREPLICA_ORACLE);
     }
 }
@@ -30,7 +30,7 @@ public class DbReplicaOracleStepsStack extends StepsStack {
     @Inject
     DbReplicaOracleStepsStack(App app, DbReplicaOracleLambdaStack lambdaStack) {
         super(app, "DRPortal-DbReplica-Oracle-Steps");
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(lambdaStack.getVersionMap());
 
         final var role = Role.Builder
                 .create(this, "Role")
@@ -0,0 +1,100 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation.dynamo;
+
+import aws.proserve.bcs.dr.formation.FunctionProfiles;
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.cem.CemStack;
+import aws.proserve.bcs.dr.formation.common.LayerStack;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
+import aws.proserve.bcs.dr.s3.S3Constants;
+import aws.proserve.bcs.formation.LambdaStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.iam.ManagedPolicy;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.lambda.FilterCriteria;
+import software.amazon.awscdk.services.lambda.FilterRule;
+import software.amazon.awscdk.services.lambda.StartingPosition;
+import software.amazon.awscdk.services.lambda.eventsources.DynamoEventSource;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves items deleted by TTL to the bucket, as gzipped JSON lines under
+ * {@code archive/<table>/year=/month=/day=/}, so that Athena can query the history by partition.
+ * Only created with {@code ARCHIVE=true}, as the handler ships in a later common lambda bundle.
+ */
+@Singleton
+public class ArchiveStack extends LambdaStack {
+    private static final String FUNCTION_NAME = "DRPArchiveExpiredItems";
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCHING_WINDOW = 300;
+
+    @Inject
+    ArchiveStack(
+            App app,
+            BucketStack bucketStack,
+            LayerStack layerStack,
+            FunctionProfiles profiles,
+            DynamoDbStack dynamoDbStack,
+            CemStack cemStack) {
+        super(app, "DRPortal-Archive", bucketStack);
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        setRole(Role.Builder
+                .create(this, "Role")
+                .assumedBy(new ServicePrincipal("lambda.amazonaws.com"))
+                .managedPolicies(List.of(
+                        ManagedPolicy.fromAwsManagedPolicyName("service-role/AWSLambdaBasicExecutionRole")))
+                .build());
+
+        final var label = "ArchiveExpiredItems";
+        final var function = profiles.apply(createFunction(this, getRole(), label,
+                FUNCTION_NAME,
+                "aws.proserve.bcs.dr.lambda.archive." + label + "::handleRequest",
+                "Lambda to archive expired items, created by DRPortal",
+                getBucket(), S3Constants.LAMBDA_COMMON), FUNCTION_NAME);
+        layerStack.getLayers(this).forEach(function::addLayers);
+        function.addEnvironment("ARCHIVE_BUCKET", getBucket().getBucketName());
+        function.addEnvironment("ARCHIVE_PREFIX", BucketStack.PREFIX_ARCHIVE);
+        getBucket().grantPut(function, BucketStack.PREFIX_ARCHIVE + "*");
+
+        for (var table : List.of(
+                dynamoDbStack.getProjectTable(), dynamoDbStack.getVpcTable(), cemStack.getBlueprintTable())) {
+            function.addEventSource(expiredItems(table));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.ARCHIVE));
+    }
+
+    /**
+     * Only deletions made by the TTL process reach the function, deletions by users are not archived.
+     */
+    private DynamoEventSource expiredItems(Table table) {
+        return DynamoEventSource.Builder
+                .create(table)
+                .startingPosition(StartingPosition.TRIM_HORIZON)
+                .batchSize(BATCH_SIZE)
+                .maxBatchingWindow(Duration.seconds(BATCHING_WINDOW))
+                .bisectBatchOnError(true)
+                .retryAttempts(3)
+                .filters(List.of(FilterCriteria.filter(Map.of(
+                        "eventName", FilterRule.isEqual("REMOVE"),
+                        "userIdentity", Map.of(
+                                "type", FilterRule.isEqual("Service"),
+                                "principalId", FilterRule.isEqual("dynamodb.amazonaws.com"))))))
+                .build();
+    }
+}
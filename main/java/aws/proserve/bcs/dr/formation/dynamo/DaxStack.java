@@ -0,0 +1,95 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation.dynamo;
+
+import aws.proserve.bcs.dr.cem.CemConstants;
+import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.vpc.VpcStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.dax.CfnCluster;
+import software.amazon.awscdk.services.dax.CfnSubnetGroup;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.ec2.ISubnet;
+import software.amazon.awscdk.services.ec2.Port;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.ssm.StringParameter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An optional DAX cluster in front of the portal tables, created only if {@code DAX_NODE_COUNT} is positive.
+ * Readers in the VPC find the endpoint in {@link #PARAM_ENDPOINT} and connect from the default security group.
+ */
+@Singleton
+public class DaxStack extends Stack {
+    public static final String PARAM_ENDPOINT = "/drportal/dax/endpoint";
+
+    private static final String DEFAULT_NODE_TYPE = "dax.r5.large";
+    private static final int TLS_PORT = 9111;
+
+    @Inject
+    DaxStack(App app, VpcStack vpcStack) {
+        super(app, "DRPortal-Dax");
+
+        final var nodeCount = System.getenv(Keys.DAX_NODE_COUNT);
+        if (nodeCount == null || Integer.parseInt(nodeCount) <= 0) {
+            return;
+        }
+        final var nodeType = System.getenv(Keys.DAX_NODE_TYPE);
+
+        final var role = Role.Builder
+                .create(this, "Role")
+                .assumedBy(new ServicePrincipal("dax.amazonaws.com"))
+                .build();
+        for (var tableName : List.of(
+                DynamoConstants.TABLE_PROJECT, DynamoConstants.TABLE_VPC, CemConstants.TABLE_BLUEPRINT)) {
+            Table.fromTableName(this, tableName + "Table", tableName).grantReadWriteData(role);
+        }
+
+        final var vpc = vpcStack.getVpc();
+        final var securityGroup = SecurityGroup.Builder
+                .create(this, "SecurityGroup")
+                .vpc(vpc)
+                .description("The drportal DAX security group")
+                .allowAllOutbound(true)
+                .build();
+        securityGroup.addIngressRule(vpcStack.getSecurityGroup(), Port.tcp(TLS_PORT),
+                "Allow DAX connection from the default group");
+
+        final var subnetGroup = CfnSubnetGroup.Builder
+                .create(this, "SubnetGroup")
+                .subnetGroupName("drportal-dax-isolated-group")
+                .description("The isolated subnet group for DAX")
+                .subnetIds(vpc.getIsolatedSubnets().stream().map(ISubnet::getSubnetId).collect(Collectors.toList()))
+                .build();
+
+        final var cluster = CfnCluster.Builder
+                .create(this, "Cluster")
+                .clusterName("drportal-dax")
+                .description("The read-through cache of portal tables, created by DRPortal")
+                .iamRoleArn(role.getRoleArn())
+                .nodeType(nodeType == null ? DEFAULT_NODE_TYPE : nodeType)
+                .replicationFactor(Integer.parseInt(nodeCount))
+                .subnetGroupName(subnetGroup.getRef())
+                .securityGroupIds(List.of(securityGroup.getSecurityGroupId()))
+                .clusterEndpointEncryptionType("TLS")
+                .sseSpecification(CfnCluster.SSESpecificationProperty.builder()
+                        .sseEnabled(true)
+                        .build())
+                .build();
+
+        StringParameter.Builder
+                .create(this, "Endpoint")
+                .parameterName(PARAM_ENDPOINT)
+                .stringValue(cluster.getAttrClusterDiscoveryEndpointUrl())
+                .build();
+    }
+}
@@ -4,49 +4,166 @@
 package aws.proserve.bcs.dr.formation.dynamo;
 
 import aws.proserve.bcs.dr.dynamo.DynamoConstants;
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.TableProfiles;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
-import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
+import software.amazon.awscdk.services.dynamodb.StreamViewType;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.dynamodb.TableEncryption;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Index keys are top level attributes kept by the writers of the items, nested values such as
+ * {@code sourceRegion.name} cannot be keys. Items without them are left out of the sparse indexes.
+ */
 @Singleton
 public class DynamoDbStack extends Stack {
+    public static final String ATTR_TYPE = "type";
+    public static final String ATTR_STATE = "state";
+    public static final String ATTR_REGION = "region";
+    public static final String ATTR_LAST_UPDATE_TIME = "lastUpdateTime";
+
+    /**
+     * Epoch seconds after which DynamoDB deletes the item, and the archiver copies it to the bucket.
+     */
+    public static final String ATTR_EXPIRE_TIME = "expireTime";
+
+    private static final List<String> INDEX_KEYS = List.of(ATTR_TYPE, ATTR_STATE, ATTR_REGION);
+
+    private final Table projectTable;
+    private final Table vpcTable;
 
     @Inject
-    DynamoDbStack(App app) {
+    DynamoDbStack(App app, TableProfiles profiles) {
         super(app, "DRPortal-DynamoDb");
 
-        Table.Builder
+        final var indexKeys = indexKeys();
+        final var indexNames = indexKeys.stream().map(DynamoDbStack::indexName).collect(Collectors.toList());
+
+        this.projectTable = Table.Builder
                 .create(this, "ProjectTable")
-                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .billingMode(profiles.billingMode(DynamoConstants.TABLE_PROJECT))
+                .readCapacity(profiles.readCapacity(DynamoConstants.TABLE_PROJECT))
+                .writeCapacity(profiles.writeCapacity(DynamoConstants.TABLE_PROJECT))
                 .tableName(DynamoConstants.TABLE_PROJECT)
                 .partitionKey(Attribute.builder()
                         .name(DynamoConstants.KEY_ID)
                         .type(AttributeType.STRING)
                         .build())
+                .timeToLiveAttribute(ATTR_EXPIRE_TIME)
+                .stream(StreamViewType.NEW_AND_OLD_IMAGES)
+                .replicationRegions(replicaRegions())
                 .pointInTimeRecovery(true)
                 .encryption(TableEncryption.AWS_MANAGED)
                 .removalPolicy(RemovalPolicy.DESTROY)
                 .build();
+        indexKeys.forEach(key -> addIndex(projectTable, key));
+        profiles.apply(projectTable, DynamoConstants.TABLE_PROJECT, indexNames);
 
-        Table.Builder
+        this.vpcTable = Table.Builder
                 .create(this, "VpcTable")
-                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .billingMode(profiles.billingMode(DynamoConstants.TABLE_VPC))
+                .readCapacity(profiles.readCapacity(DynamoConstants.TABLE_VPC))
+                .writeCapacity(profiles.writeCapacity(DynamoConstants.TABLE_VPC))
                 .tableName(DynamoConstants.TABLE_VPC)
                 .partitionKey(Attribute.builder()
                         .name(DynamoConstants.KEY_ID)
                         .type(AttributeType.STRING)
                         .build())
+                .timeToLiveAttribute(ATTR_EXPIRE_TIME)
+                .stream(StreamViewType.NEW_AND_OLD_IMAGES)
+                .replicationRegions(replicaRegions())
                 .pointInTimeRecovery(true)
                 .encryption(TableEncryption.AWS_MANAGED)
                 .removalPolicy(RemovalPolicy.DESTROY)
                 .build();
+        indexKeys.forEach(key -> addIndex(vpcTable, key));
+        profiles.apply(vpcTable, DynamoConstants.TABLE_VPC, indexNames);
+    }
+
+    /**
+     * @return name of the index listing items by the given key, ordered by update time.
+     */
+    public static String indexName(String key) {
+        return key + "-" + ATTR_LAST_UPDATE_TIME + "-index";
+    }
+
+    /**
+     * CloudFormation creates one index per table update, so {@code TABLE_INDEXES} grows by one key per
+     * deployment, and the indexes are added in the order listed.
+     */
+    private static List<String> indexKeys() {
+        final var keys = System.getenv(Keys.TABLE_INDEXES);
+        if (keys == null || keys.isBlank()) {
+            return List.of();
+        }
+
+        final var indexKeys = Arrays.stream(keys.split(","))
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        for (var key : indexKeys) {
+            if (!INDEX_KEYS.contains(key)) {
+                throw new IllegalArgumentException(String.format("%s must only list %s, but lists %s",
+                        Keys.TABLE_INDEXES, INDEX_KEYS, key));
+            }
+        }
+        return indexKeys;
+    }
+
+    private void addIndex(Table table, String key) {
+        table.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName(indexName(key))
+                .partitionKey(Attribute.builder()
+                        .name(key)
+                        .type(AttributeType.STRING)
+                        .build())
+                .sortKey(Attribute.builder()
+                        .name(ATTR_LAST_UPDATE_TIME)
+                        .type(AttributeType.STRING)
+                        .build())
+                .projectionType(ProjectionType.INCLUDE)
+                .nonKeyAttributes(List.of("name", ATTR_TYPE, ATTR_STATE, ATTR_REGION).stream()
+                        .filter(attribute -> !attribute.equals(key))
+                        .collect(Collectors.toList()))
+                .build());
+    }
+
+    /**
+     * @return regions of {@code REPLICA_REGIONS} other than {@code REGION}, which holds the table itself,
+     * or null to keep the tables in this region only.
+     */
+    public static List<String> replicaRegions() {
+        final var regions = System.getenv(Keys.REPLICA_REGIONS);
+        if (regions == null || regions.isBlank()) {
+            return null;
+        }
+
+        final var home = System.getenv("REGION");
+        final var replicas = Arrays.stream(regions.split(","))
+                .map(String::trim)
+                .filter(region -> !region.isEmpty() && !region.equals(home))
+                .collect(Collectors.toList());
+        return replicas.isEmpty() ? null : replicas;
+    }
+
+    public Table getProjectTable() {
+        return projectTable;
+    }
+
+    public Table getVpcTable() {
+        return vpcTable;
     }
 }
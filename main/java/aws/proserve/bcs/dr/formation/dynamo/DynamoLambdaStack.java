@@ -3,9 +3,10 @@
 
 package aws.proserve.bcs.dr.formation.dynamo;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -17,11 +18,14 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class DynamoLambdaStack extends LambdaStack {
+public class DynamoLambdaStack extends PortalLambdaStack {
 
     @Inject
-    DynamoLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-Dynamo-Lambda", bucketStack);
+    DynamoLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-Dynamo-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -39,11 +43,16 @@ public class DynamoLambdaStack extends LambdaStack {
         createFunction("ConfigureStream");
     }
 
+    @Override
+    protected boolean usesSecrets() {
+        return true;
+    }
+
     private Function createFunction(String label) {
-        return createFunction(this, getRole(), label,
-                "DRPDynamo" + label,
-                String.format("aws.proserve.bcs.dr.dynamo.%s::handleRequest", label),
+        final var functionName = "DRPDynamo" + label;
+        return createFunction(label, functionName,
+                String.format("aws.proserve.bcs.dr.dynamo.%s", label),
                 String.format("Lambda to replicate DynamoDB (%s), created by DRPortal", label),
-                getBucket(), S3Constants.LAMBDA_DYNAMO);
+                S3Constants.LAMBDA_DYNAMO);
     }
 }
@@ -28,12 +28,12 @@ public class DynamoStepsStack extends StepsStack {
     @Inject
     DynamoStepsStack(
             App app,
-            DynamoLambdaStack lambdaStack,
+            DynamoDeployStack deployStack,
             DynamoEcsStack ecsStack) {
         super(app, "DRPortal-Dynamo-Steps");
         this.ecsStack = ecsStack;
 
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(deployStack.getAliasMap());
         final var role = Role.Builder
                 .create(this, "Role")
                 .assumedBy(new ServicePrincipal("states.amazonaws.com"))
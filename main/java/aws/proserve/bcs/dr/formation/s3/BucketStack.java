@@ -3,22 +3,44 @@
 
 package aws.proserve.bcs.dr.formation.s3;
 
+import aws.proserve.bcs.dr.formation.site.StaticSiteStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
 import aws.proserve.bcs.formation.BucketProvider;
 import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Aws;
+import software.amazon.awscdk.core.Duration;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.cloudfront.OriginAccessIdentity;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.s3.BlockPublicAccess;
 import software.amazon.awscdk.services.s3.Bucket;
 import software.amazon.awscdk.services.s3.BucketEncryption;
+import software.amazon.awscdk.services.s3.LifecycleRule;
+import software.amazon.awscdk.services.s3.StorageClass;
+import software.amazon.awscdk.services.s3.Transition;
 import software.amazon.awscdk.services.ssm.StringParameter;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class BucketStack extends Stack implements BucketProvider {
+    public static final String PREFIX_ARCHIVE = "archive/";
+    public static final String PREFIX_CLAIM_CHECK = "claim-check/";
+    public static final String PREFIX_FLOW_LOG = "flow-log/";
+    public static final String PARAM_FLOW_LOG_BUCKET = "/drportal/s3/flow-log-bucket";
+    public static final String PREFIX_CLIENT = "web/client/";
+    private static final int ARCHIVE_TRANSITION_DAYS = 30;
+    private static final int CLAIM_CHECK_EXPIRATION_DAYS = 1;
 
     private final Bucket bucket;
+    private final OriginAccessIdentity clientIdentity;
+    private final Bucket flowLogBucket;
 
     @Inject
     BucketStack(App app) {
@@ -28,6 +50,20 @@ public class BucketStack extends Stack implements BucketProvider {
                 .create(this, "Common")
                 .encryption(BucketEncryption.KMS_MANAGED)
                 .removalPolicy(RemovalPolicy.DESTROY)
+                .lifecycleRules(List.of(LifecycleRule.builder()
+                        .id("Archive")
+                        .prefix(PREFIX_ARCHIVE)
+                        .transitions(List.of(Transition.builder()
+                                .storageClass(StorageClass.INFREQUENT_ACCESS)
+                                .transitionAfter(Duration.days(ARCHIVE_TRANSITION_DAYS))
+                                .build()))
+                        .build(),
+                        // payloads of state machines are only read during the execution.
+                        LifecycleRule.builder()
+                                .id("ClaimCheck")
+                                .prefix(PREFIX_CLAIM_CHECK)
+                                .expiration(Duration.days(CLAIM_CHECK_EXPIRATION_DAYS))
+                                .build()))
                 .build();
 
         StringParameter.Builder
@@ -35,10 +71,81 @@ public class BucketStack extends Stack implements BucketProvider {
                 .parameterName(S3Constants.PARAM_BUCKET)
                 .stringValue(bucket.getBucketName())
                 .build();
+
+        this.flowLogBucket = VpcStack.isFlowLogToS3() ? createFlowLogBucket() : null;
+
+        // lives with the bucket, as a grant from the site stack would make both stacks depend on each other.
+        if (StaticSiteStack.isEnabled()) {
+            this.clientIdentity = OriginAccessIdentity.Builder
+                    .create(this, "ClientIdentity")
+                    .comment("Reads the web client of DRPortal")
+                    .build();
+            bucket.grantRead(clientIdentity, PREFIX_CLIENT + "*");
+        } else {
+            this.clientIdentity = null;
+        }
+    }
+
+    /**
+     * Log delivery cannot encrypt with the AWS managed key of the common bucket, so flow logs go to a bucket of
+     * their own with SSE-S3. The delivery statements are declared here, as the bucket policy managed by the stack
+     * would replace any the service adds.
+     */
+    private Bucket createFlowLogBucket() {
+        final var flowLogs = Bucket.Builder
+                .create(this, "FlowLog")
+                .encryption(BucketEncryption.S3_MANAGED)
+                .blockPublicAccess(BlockPublicAccess.BLOCK_ALL)
+                .enforceSsl(true)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+
+        final var delivery = new ServicePrincipal("delivery.logs.amazonaws.com");
+        final var sourceAccount = Map.of("aws:SourceAccount", Aws.ACCOUNT_ID);
+        flowLogs.addToResourcePolicy(PolicyStatement.Builder
+                .create()
+                .sid("AWSLogDeliveryWrite")
+                .principals(List.of(delivery))
+                .actions(List.of("s3:PutObject"))
+                .resources(List.of(flowLogs.arnForObjects(PREFIX_FLOW_LOG + "AWSLogs/" + Aws.ACCOUNT_ID + "/*")))
+                .conditions(Map.of("StringEquals", Map.of(
+                        "s3:x-amz-acl", "bucket-owner-full-control",
+                        "aws:SourceAccount", Aws.ACCOUNT_ID)))
+                .build());
+        flowLogs.addToResourcePolicy(PolicyStatement.Builder
+                .create()
+                .sid("AWSLogDeliveryAclCheck")
+                .principals(List.of(delivery))
+                .actions(List.of("s3:GetBucketAcl"))
+                .resources(List.of(flowLogs.getBucketArn()))
+                .conditions(Map.of("StringEquals", sourceAccount))
+                .build());
+
+        StringParameter.Builder
+                .create(this, "FlowLogBucketName")
+                .parameterName(PARAM_FLOW_LOG_BUCKET)
+                .stringValue(flowLogs.getBucketName())
+                .build();
+        return flowLogs;
     }
 
     @Override
     public Bucket getBucket() {
         return bucket;
     }
+
+    /**
+     * @return the destination of flow logs under {@link #PREFIX_FLOW_LOG}, or {@code null} unless
+     * {@code FLOW_LOG_DESTINATION=s3}.
+     */
+    public Bucket getFlowLogBucket() {
+        return flowLogBucket;
+    }
+
+    /**
+     * @return the identity of CloudFront reading {@link #PREFIX_CLIENT}, or {@code null} without the static site.
+     */
+    public OriginAccessIdentity getClientIdentity() {
+        return clientIdentity;
+    }
 }
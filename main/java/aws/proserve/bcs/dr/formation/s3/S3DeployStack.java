@@ -12,15 +12,20 @@ import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.lambda.Alias;
+import software.amazon.awscdk.services.lambda.IFunction;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class S3DeployStack extends Stack {
 
+    private final Map<String, IFunction> aliasMap = new HashMap<>();
+
     @Inject
     S3DeployStack(App app, S3LambdaStack lambdaStack) {
         super(app, "DRPortal-S3-CodeDeploy");
@@ -41,18 +46,28 @@ public class S3DeployStack extends Stack {
         final var functionMap = lambdaStack.getFunctionMap();
 
         for (var entry : functionMap.entrySet()) {
+            final var alias = Alias.Builder
+                    .create(this, entry.getKey() + "ProdAlias")
+                    .aliasName("prod")
+                    .version(entry.getValue().addVersion(Instant.now().toString()))
+                    .build();
+            aliasMap.put(entry.getKey(), alias);
+
             LambdaDeploymentGroup.Builder
                     .create(this, entry.getKey() + "DeploymentGroup")
                     // .role(role)
                     .deploymentGroupName(entry.getKey())
                     .application(application)
                     .deploymentConfig(LambdaDeploymentConfig.ALL_AT_ONCE)
-                    .alias(Alias.Builder
-                            .create(this, entry.getKey() + "ProdAlias")
-                            .aliasName("prod")
-                            .version(entry.getValue().addVersion(Instant.now().toString()))
-                            .build())
+                    .alias(alias)
                     .build();
         }
     }
+
+    /**
+     * @return the {@code prod} aliases keyed by function label.
+     */
+    public Map<String, IFunction> getAliasMap() {
+        return aliasMap;
+    }
 }
@@ -3,8 +3,9 @@
 
 package aws.proserve.bcs.dr.formation.s3;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
@@ -16,11 +17,14 @@ import javax.inject.Singleton;
 import java.util.List;
 
 @Singleton
-public class S3LambdaStack extends LambdaStack {
+public class S3LambdaStack extends PortalLambdaStack {
 
     @Inject
-    S3LambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-S3-Lambda", bucketStack);
+    S3LambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-S3-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -44,10 +48,10 @@ public class S3LambdaStack extends LambdaStack {
     }
 
     private Function createFunction(String label) {
-        return createFunction(this, getRole(), label,
-                "DRPS3" + label,
-                String.format("aws.proserve.bcs.dr.s3.%s::handleRequest", label),
+        final var functionName = "DRPS3" + label;
+        return createFunction(label, functionName,
+                String.format("aws.proserve.bcs.dr.s3.%s", label),
                 String.format("Lambda to replicate S3 (%s), created by DRPortal", label),
-                getBucket(), S3Constants.LAMBDA_S3);
+                S3Constants.LAMBDA_S3);
     }
 }
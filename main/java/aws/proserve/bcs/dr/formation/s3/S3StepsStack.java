@@ -29,12 +29,12 @@ public class S3StepsStack extends StepsStack {
     @Inject
     S3StepsStack(
             App app,
-            S3LambdaStack lambdaStack,
+            S3DeployStack deployStack,
             S3EcsStack ecsStack) {
         super(app, "DRPortal-S3-Steps");
         this.ecsStack = ecsStack;
 
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(deployStack.getAliasMap());
 
         final var role = Role.Builder
                 .create(this, "Role")
@@ -8,7 +8,15 @@ import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.formation.vpc.VpcStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.customresources.AwsCustomResource;
+import software.amazon.awscdk.customresources.AwsCustomResourcePolicy;
+import software.amazon.awscdk.customresources.AwsSdkCall;
+import software.amazon.awscdk.customresources.PhysicalResourceId;
+import software.amazon.awscdk.customresources.SdkCallsPolicyOptions;
 import software.amazon.awscdk.services.ec2.ISubnet;
+import software.amazon.awscdk.services.ec2.Peer;
+import software.amazon.awscdk.services.ec2.Port;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
 import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.elasticbeanstalk.CfnApplication;
 import software.amazon.awscdk.services.elasticbeanstalk.CfnApplicationVersion;
@@ -26,10 +34,18 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Singleton
 public class BeanstalkStack extends Stack {
+    private static final String DEFAULT_INSTANCE_TYPES = "t3.medium,t3a.medium";
+    private static final int IDLE_TIMEOUT = 60;
+    private static final int DEREGISTRATION_TIMEOUT = 30;
+    private static final String CLOUDFRONT_PREFIX_LIST = "com.amazonaws.global.cloudfront.origin-facing";
+    private static final String JFR_MAX_AGE = "6h";
+    private static final String JFR_MAX_SIZE = "250m";
+    private static final String JFR_FILE = "/tmp/drp-server.jfr";
 
     private final Role serviceRole;
     private final CfnInstanceProfile instanceProfile;
@@ -74,7 +90,10 @@ public class BeanstalkStack extends Stack {
                 .roles(List.of(((CfnRole) instanceRole.getNode().getDefaultChild()).getRef()))
                 .build();
 
-        client();
+        // the static site serves the client from CloudFront instead.
+        if (!StaticSiteStack.isEnabled()) {
+            client();
+        }
         this.serverUrl = server();
     }
 
@@ -106,6 +125,9 @@ public class BeanstalkStack extends Stack {
                 serviceRole(),
                 streamLogs(),
                 deleteOnTerminate()));
+        settings.addAll(loadBalancer());
+        settings.addAll(capacity(Keys.CLIENT_INSTANCE_TYPES, Keys.CLIENT_MIN_SIZE, Keys.CLIENT_MAX_SIZE,
+                Keys.CLIENT_SCALING_TRIGGER));
         final var template = CfnConfigurationTemplate.Builder
                 .create(this, "ClientConfiguration")
                 .applicationName(application.getRef())
@@ -136,7 +158,13 @@ public class BeanstalkStack extends Stack {
                                 .build())
                 .build();
 
-        final var settings = vpc(vpc, true);
+        // CloudFront proxies the API paths to drp-server, which must then face the internet.
+        final var staticSite = StaticSiteStack.isEnabled();
+        final var settings = vpc(vpc, !staticSite);
+        if (staticSite) {
+            settings.addAll(cloudFrontOnly());
+            settings.add(disable80());
+        }
         if (certificateId != null) {
             settings.addAll(httpsListener(certificateId));
         }
@@ -144,6 +172,14 @@ public class BeanstalkStack extends Stack {
                 serviceRole(),
                 streamLogs(),
                 deleteOnTerminate()));
+        settings.addAll(loadBalancer());
+        settings.addAll(capacity(Keys.SERVER_INSTANCE_TYPES, Keys.SERVER_MIN_SIZE, Keys.SERVER_MAX_SIZE,
+                Keys.SERVER_SCALING_TRIGGER));
+        final var jvmOptions = jvmOptions();
+        if (!jvmOptions.isEmpty()) {
+            // the JVM reads it from the environment, whatever command line the platform launches it with.
+            settings.add(setProperty("JAVA_TOOL_OPTIONS", jvmOptions));
+        }
         final var template = CfnConfigurationTemplate.Builder
                 .create(this, "ServerConfiguration")
                 .applicationName(application.getRef())
@@ -180,25 +216,193 @@ public class BeanstalkStack extends Stack {
                         .optionName("AssociatePublicIpAddress").value("false").build()));
     }
 
+    /**
+     * Replaces the managed security group of the load balancer, which admits everyone, with one admitting only
+     * the origin facing servers of CloudFront on the HTTPS listener. The id of their managed prefix list differs
+     * by region.
+     */
+    private List<ConfigurationOptionSettingProperty> cloudFrontOnly() {
+        final var prefixList = AwsCustomResource.Builder
+                .create(this, "CloudFrontPrefixList")
+                .onUpdate(AwsSdkCall.builder()
+                        .service("EC2")
+                        .action("describeManagedPrefixLists")
+                        .parameters(Map.of("Filters", List.of(Map.of(
+                                "Name", "prefix-list-name",
+                                "Values", List.of(CLOUDFRONT_PREFIX_LIST)))))
+                        .physicalResourceId(PhysicalResourceId.of(CLOUDFRONT_PREFIX_LIST))
+                        .build())
+                .policy(AwsCustomResourcePolicy.fromSdkCalls(SdkCallsPolicyOptions.builder()
+                        .resources(AwsCustomResourcePolicy.ANY_RESOURCE)
+                        .build()))
+                .build();
+
+        final var securityGroup = SecurityGroup.Builder
+                .create(this, "ServerLoadBalancerSecurityGroup")
+                .vpc(vpc)
+                .description("The drportal server load balancer security group")
+                .allowAllOutbound(true)
+                .build();
+        securityGroup.addIngressRule(Peer.prefixList(prefixList.getResponseField("PrefixLists.0.PrefixListId")),
+                Port.tcp(443), "Allow HTTPS from CloudFront");
+
+        final var namespace = isApplicationLoadBalancer() ? "aws:elbv2:loadbalancer" : "aws:elb:loadbalancer";
+        return List.of(
+                ConfigurationOptionSettingProperty.builder().namespace(namespace)
+                        .optionName("SecurityGroups").value(securityGroup.getSecurityGroupId()).build(),
+                ConfigurationOptionSettingProperty.builder().namespace(namespace)
+                        .optionName("ManagedSecurityGroup").value(securityGroup.getSecurityGroupId()).build());
+    }
+
     private ConfigurationOptionSettingProperty disable80() {
         return ConfigurationOptionSettingProperty.builder()
-                .namespace("aws:elb:listener")
+                .namespace(isApplicationLoadBalancer() ? "aws:elbv2:listener:default" : "aws:elb:listener")
                 .optionName("ListenerEnabled")
                 .value("false")
                 .build();
     }
 
     private List<ConfigurationOptionSettingProperty> httpsListener(String certificateId) {
+        if (!isApplicationLoadBalancer()) {
+            return new ArrayList<>(List.of(
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
+                            .optionName("SSLCertificateId").value(certificateId).build(),
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
+                            .optionName("ListenerProtocol").value("HTTPS").build(),
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
+                            .optionName("InstancePort").value("80").build()
+            ));
+        }
+
         return new ArrayList<>(List.of(
-                ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
-                        .optionName("SSLCertificateId").value(certificateId).build(),
-                ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
-                        .optionName("ListenerProtocol").value("HTTPS").build(),
-                ConfigurationOptionSettingProperty.builder().namespace("aws:elb:listener:443")
-                        .optionName("InstancePort").value("80").build()
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elbv2:listener:443")
+                        .optionName("SSLCertificateArns").value(certificateId).build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elbv2:listener:443")
+                        .optionName("Protocol").value("HTTPS").build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elbv2:listener:443")
+                        .optionName("DefaultProcess").value("default").build()
         ));
     }
 
+    /**
+     * The load balancer type of an environment cannot change once created, so existing environments keep the
+     * classic load balancer unless {@code LOAD_BALANCER=application}.
+     */
+    private static boolean isApplicationLoadBalancer() {
+        return "application".equals(System.getenv(Keys.LOAD_BALANCER));
+    }
+
+    /**
+     * An application load balancer serves HTTP/2 to browsers on its HTTPS listener and keeps connections to the
+     * instances alive. The idle timeout of either type stays below the 65 seconds keep-alive of the nginx proxy
+     * on the instances, so the balancer never reuses a connection the proxy has closed. In-flight requests of a
+     * deregistered instance are drained for {@code DEREGISTRATION_TIMEOUT} seconds.
+     */
+    private List<ConfigurationOptionSettingProperty> loadBalancer() {
+        if (!isApplicationLoadBalancer()) {
+            return List.of(
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:policies")
+                            .optionName("ConnectionSettingIdleTimeout").value(String.valueOf(IDLE_TIMEOUT)).build(),
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:policies")
+                            .optionName("ConnectionDrainingEnabled").value("true").build(),
+                    ConfigurationOptionSettingProperty.builder().namespace("aws:elb:policies")
+                            .optionName("ConnectionDrainingTimeout")
+                            .value(String.valueOf(DEREGISTRATION_TIMEOUT)).build());
+        }
+
+        return List.of(
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elasticbeanstalk:environment")
+                        .optionName("EnvironmentType").value("LoadBalanced").build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elasticbeanstalk:environment")
+                        .optionName("LoadBalancerType").value("application").build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:elbv2:loadbalancer")
+                        .optionName("IdleTimeout").value(String.valueOf(IDLE_TIMEOUT)).build(),
+                ConfigurationOptionSettingProperty.builder()
+                        .namespace("aws:elasticbeanstalk:environment:process:default")
+                        .optionName("DeregistrationTimeout").value(String.valueOf(DEREGISTRATION_TIMEOUT)).build());
+    }
+
+    /**
+     * Scales between {@code MIN_SIZE} and {@code MAX_SIZE} instances of {@code INSTANCE_TYPES}, on average CPU
+     * utilization or, with {@code SCALING_TRIGGER=Latency}, on the response time of the load balancer.
+     */
+    private List<ConfigurationOptionSettingProperty> capacity(String instanceTypesKey, String minSizeKey,
+                                                            String maxSizeKey, String triggerKey) {
+        final var latency = "Latency".equals(System.getenv(triggerKey));
+        return List.of(
+                ConfigurationOptionSettingProperty.builder().namespace("aws:ec2:instances")
+                        .optionName("InstanceTypes").value(getenv(instanceTypesKey, DEFAULT_INSTANCE_TYPES)).build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:autoscaling:asg")
+                        .optionName("MinSize").value(getenv(minSizeKey, "1")).build(),
+                ConfigurationOptionSettingProperty.builder().namespace("aws:autoscaling:asg")
+                        .optionName("MaxSize").value(getenv(maxSizeKey, "4")).build(),
+                trigger("MeasureName", !latency ? "CPUUtilization"
+                        : isApplicationLoadBalancer() ? "TargetResponseTime" : "Latency"),
+                trigger("Statistic", "Average"),
+                trigger("Unit", latency ? "Seconds" : "Percent"),
+                trigger("UpperThreshold", latency ? "1" : "60"),
+                trigger("LowerThreshold", latency ? "0.2" : "20"),
+                trigger("Period", "1"),
+                trigger("BreachDuration", "2"),
+                trigger("UpperBreachScaleIncrement", "2"));
+    }
+
+    /**
+     * Selects the JVM options of drp-server with {@code SERVER_JVM_PROFILE}. The heap is sized relative to the
+     * instance memory, leaving the rest to nginx, metaspace and thread stacks. {@code throughput} runs G1, while
+     * {@code latency} runs ZGC, experimental in Java 11, with more headroom for its concurrent work.
+     * <p>
+     * With {@code SERVER_JFR=true}, a continuous flight recording is kept on disk and dumped on exit, and GC
+     * events are logged to stdout, which is streamed to CloudWatch Logs. The recording is binary and stays on the
+     * instance, as CloudWatch Logs only streams text; it is lost with the instance when scaling in. {@code SERVER_CDS_ARCHIVE} points at an
+     * application class data sharing archive in the source bundle, to shorten the startup of new instances.
+     */
+    private String jvmOptions() {
+        final var profile = System.getenv(Keys.SERVER_JVM_PROFILE);
+        final var options = new ArrayList<String>();
+        if ("throughput".equals(profile)) {
+            options.addAll(List.of(
+                    "-XX:InitialRAMPercentage=70",
+                    "-XX:MaxRAMPercentage=70",
+                    "-XX:+UseG1GC",
+                    "-XX:MaxGCPauseMillis=200",
+                    "-XX:+ParallelRefProcEnabled"));
+        } else if ("latency".equals(profile)) {
+            options.addAll(List.of(
+                    "-XX:InitialRAMPercentage=60",
+                    "-XX:MaxRAMPercentage=60",
+                    "-XX:+AlwaysPreTouch",
+                    "-XX:+UnlockExperimentalVMOptions",
+                    "-XX:+UseZGC"));
+        }
+
+        final var cdsArchive = System.getenv(Keys.SERVER_CDS_ARCHIVE);
+        if (cdsArchive != null) {
+            options.addAll(List.of("-Xshare:auto", "-XX:SharedArchiveFile=" + cdsArchive));
+        }
+
+        if (Boolean.parseBoolean(System.getenv(Keys.SERVER_JFR))) {
+            options.addAll(List.of(
+                    String.format("-XX:StartFlightRecording=name=continuous,disk=true,maxage=%s,maxsize=%s,"
+                            + "dumponexit=true,filename=%s", JFR_MAX_AGE, JFR_MAX_SIZE, JFR_FILE),
+                    "-Xlog:gc:stdout:time,uptime,level"));
+        }
+        return String.join(" ", options);
+    }
+
+    private ConfigurationOptionSettingProperty trigger(String optionName, String value) {
+        return ConfigurationOptionSettingProperty.builder()
+                .namespace("aws:autoscaling:trigger")
+                .optionName(optionName)
+                .value(value)
+                .build();
+    }
+
+    private static String getenv(String key, String defaultValue) {
+        final var value = System.getenv(key);
+        return value == null ? defaultValue : value;
+    }
+
     private ConfigurationOptionSettingProperty instanceProfile() {
         return ConfigurationOptionSettingProperty.builder()
                 .namespace("aws:autoscaling:launchconfiguration")
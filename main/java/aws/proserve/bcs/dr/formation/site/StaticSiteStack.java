@@ -0,0 +1,147 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation.site;
+
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
+import aws.proserve.bcs.dr.formation.vpc.VpcStack;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.cloudfront.AllowedMethods;
+import software.amazon.awscdk.services.cloudfront.BehaviorOptions;
+import software.amazon.awscdk.services.cloudfront.CachePolicy;
+import software.amazon.awscdk.services.cloudfront.Distribution;
+import software.amazon.awscdk.services.cloudfront.ErrorResponse;
+import software.amazon.awscdk.services.cloudfront.OriginProtocolPolicy;
+import software.amazon.awscdk.services.cloudfront.OriginRequestPolicy;
+import software.amazon.awscdk.services.cloudfront.ViewerProtocolPolicy;
+import software.amazon.awscdk.services.cloudfront.origins.HttpOrigin;
+import software.amazon.awscdk.services.cloudfront.origins.S3Origin;
+import software.amazon.awscdk.services.s3.Bucket;
+import software.amazon.awscdk.services.ssm.StringParameter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Serves the web client from a versioned prefix of the common bucket through CloudFront, created only if
+ * {@code SITE_MODE=static}. Hashed assets are cached for a year, {@code index.html} is never cached so that a new
+ * {@code CLIENT_VERSION} takes effect at once, and the API paths are proxied to drp-server.
+ * <p>
+ * Routes of the client have no object in the bucket, so S3 answers them with 403 or 404, which CloudFront
+ * replaces with {@code index.html}. Error responses apply to the whole distribution, the API paths included.
+ */
+@Singleton
+public class StaticSiteStack extends Stack {
+    public static final String PARAM_DOMAIN = "/drportal/site/domain";
+
+    private static final String DEFAULT_CLIENT_VERSION = "latest";
+    private static final String DEFAULT_API_PATH = "/api/*";
+    private static final int ASSET_TTL_DAYS = 365;
+
+    @Inject
+    StaticSiteStack(App app, BucketStack bucketStack) {
+        super(app, "DRPortal-Static-Site");
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        // imported, so that the origin does not add a bucket wide grant; BucketStack grants the client prefix.
+        final var bucket = Bucket.fromBucketName(this, "Common", bucketStack.getBucket().getBucketName());
+        final var client = S3Origin.Builder
+                .create(bucket)
+                .originPath("/" + BucketStack.PREFIX_CLIENT + clientVersion())
+                .originAccessIdentity(bucketStack.getClientIdentity())
+                .build();
+
+        // the name of the load balancer does not match the certificate of its HTTPS listener, the domain does.
+        final var server = HttpOrigin.Builder
+                .create(serverDomain())
+                .protocolPolicy(OriginProtocolPolicy.HTTPS_ONLY)
+                .build();
+
+        final var assetPolicy = CachePolicy.Builder
+                .create(this, "AssetPolicy")
+                .cachePolicyName("DRPortal-Client-Assets")
+                .comment("Assets of the web client have hashed names and never change")
+                .defaultTtl(Duration.days(ASSET_TTL_DAYS))
+                // "/" is served here as the default root object, and must honor no-cache of index.html.
+                .minTtl(Duration.ZERO)
+                .maxTtl(Duration.days(ASSET_TTL_DAYS))
+                .enableAcceptEncodingGzip(true)
+                .enableAcceptEncodingBrotli(true)
+                .build();
+
+        final var apiPath = System.getenv(Keys.SITE_API_PATH);
+        final var distribution = Distribution.Builder
+                .create(this, "Distribution")
+                .comment("The web client of DRPortal")
+                .defaultRootObject("index.html")
+                .webAclId(System.getenv(Keys.SITE_WEB_ACL_ID))
+                .errorResponses(List.of(403, 404).stream()
+                        .map(status -> ErrorResponse.builder()
+                                .httpStatus(status)
+                                .responseHttpStatus(200)
+                                .responsePagePath("/index.html")
+                                .ttl(Duration.ZERO)
+                                .build())
+                        .collect(Collectors.toList()))
+                .defaultBehavior(BehaviorOptions.builder()
+                        .origin(client)
+                        .cachePolicy(assetPolicy)
+                        .compress(true)
+                        .viewerProtocolPolicy(ViewerProtocolPolicy.REDIRECT_TO_HTTPS)
+                        .build())
+                .additionalBehaviors(Map.of(
+                        "/index.html", BehaviorOptions.builder()
+                                .origin(client)
+                                .cachePolicy(CachePolicy.CACHING_DISABLED)
+                                .compress(true)
+                                .viewerProtocolPolicy(ViewerProtocolPolicy.REDIRECT_TO_HTTPS)
+                                .build(),
+                        apiPath == null ? DEFAULT_API_PATH : apiPath, BehaviorOptions.builder()
+                                .origin(server)
+                                .allowedMethods(AllowedMethods.ALLOW_ALL)
+                                .cachePolicy(CachePolicy.CACHING_DISABLED)
+                                .originRequestPolicy(OriginRequestPolicy.ALL_VIEWER)
+                                .viewerProtocolPolicy(ViewerProtocolPolicy.HTTPS_ONLY)
+                                .build()))
+                .build();
+
+        StringParameter.Builder
+                .create(this, "SiteDomain")
+                .parameterName(PARAM_DOMAIN)
+                .stringValue(distribution.getDistributionDomainName())
+                .build();
+    }
+
+    /**
+     * CloudFront in China regions only serves ICP filed domains, where the client stays on Beanstalk.
+     */
+    public static boolean isEnabled() {
+        return "static".equals(System.getenv(Keys.SITE_MODE)) && !VpcStack.isChina();
+    }
+
+    /**
+     * @return the domain of drp-server, resolving to its load balancer, whose certificate is {@code CERTIFICATE_ID}.
+     */
+    private static String serverDomain() {
+        final var domain = System.getenv(Keys.SERVER_DOMAIN);
+        if (domain == null || System.getenv(Keys.CERTIFICATE_ID) == null) {
+            throw new IllegalStateException(String.format("SITE_MODE=static requires %s and %s",
+                    Keys.SERVER_DOMAIN, Keys.CERTIFICATE_ID));
+        }
+        return domain;
+    }
+
+    private static String clientVersion() {
+        final var version = System.getenv(Keys.CLIENT_VERSION);
+        return version == null ? DEFAULT_CLIENT_VERSION : version;
+    }
+}
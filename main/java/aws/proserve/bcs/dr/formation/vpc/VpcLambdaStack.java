@@ -3,11 +3,15 @@
 
 package aws.proserve.bcs.dr.formation.vpc;
 
+import aws.proserve.bcs.dr.formation.FunctionSupport;
+import aws.proserve.bcs.dr.formation.PortalLambdaStack;
 import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.dr.s3.S3Constants;
-import aws.proserve.bcs.formation.LambdaStack;
 import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.ArnComponents;
+import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.services.iam.ManagedPolicy;
+import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.lambda.Function;
@@ -15,13 +19,18 @@ import software.amazon.awscdk.services.lambda.Function;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Singleton
-public class VpcLambdaStack extends LambdaStack {
+public class VpcLambdaStack extends PortalLambdaStack {
 
     @Inject
-    VpcLambdaStack(App app, BucketStack bucketStack) {
-        super(app, "DRPortal-Vpc-Lambda", bucketStack);
+    VpcLambdaStack(
+            App app,
+            BucketStack bucketStack,
+            FunctionSupport support) {
+        super(app, "DRPortal-Vpc-Lambda", bucketStack, support);
 
         setRole(Role.Builder
                 .create(this, "Role")
@@ -34,6 +43,10 @@ public class VpcLambdaStack extends LambdaStack {
                         ManagedPolicy.fromAwsManagedPolicyName("AWSLambdaReadOnlyAccess"),
                         ManagedPolicy.fromAwsManagedPolicyName("CloudWatchEventsReadOnlyAccess")))
                 .build());
+        // resource maps of large VPCs are exchanged through the bucket, see VpcStepsStack.
+        if (VpcStepsStack.isClaimCheckEnabled()) {
+            getBucket().grantReadWrite(getRole(), BucketStack.PREFIX_CLAIM_CHECK + "*");
+        }
 
         createFunction("vpc", "AddVpcItem");
         createFunction("vpc", "CheckVpcReplicated");
@@ -52,6 +65,34 @@ public class VpcLambdaStack extends LambdaStack {
         createFunction("rt", "RouteTable", "ReplicateRouteTable");
         createFunction("endpoint", "Endpoint", "ReplicateEndpoint");
         createFunction("watch", "CheckWatchReady");
+
+        if (VpcStepsStack.isFanOutEnabled()) {
+            createFunction("vpc", "DiffVpc");
+            createFunction("vpc", "ListVpcResources");
+            createFunction("vpc", "MergeResourceMaps");
+            createFunction("vpc", "SaveVpcFingerprints");
+            createFunction("rt", "NatGatewayRoute", "ReplicateNatGatewayRoute");
+        }
+
+        if (VpcWatchStack.isEnabled()) {
+            createFunction("watch", "VpcChange", "ReplicateVpcChange");
+
+            // ReplicateVpcChange replicates a single resource through the function of its type, or its aliases.
+            // ARNs are built from names, as referring to the functions would make them depend on their own role.
+            getRole().addToPrincipalPolicy(PolicyStatement.Builder
+                    .create()
+                    .actions(List.of("lambda:InvokeFunction"))
+                    .resources(VpcWatchStack.REPLICATE_FUNCTIONS.stream()
+                            .flatMap(name -> Stream.of("DRPVpc" + name, "DRPVpc" + name + ":*"))
+                            .map(name -> Stack.of(this).formatArn(ArnComponents.builder()
+                                    .service("lambda")
+                                    .resource("function")
+                                    .resourceName(name)
+                                    .sep(":")
+                                    .build()))
+                            .collect(Collectors.toList()))
+                    .build());
+        }
     }
 
     private Function createFunction(String pkg, String name) {
@@ -59,10 +100,10 @@ public class VpcLambdaStack extends LambdaStack {
     }
 
     private Function createFunction(String pkg, String klass, String name) {
-        return createFunction(this, getRole(), name,
-                "DRPVpc" + name,
-                String.format("aws.proserve.bcs.dr.vpc.%s.%s::handleRequest", pkg, klass),
+        final var functionName = "DRPVpc" + name;
+        return createFunction(name, functionName,
+                String.format("aws.proserve.bcs.dr.vpc.%s.%s", pkg, klass),
                 String.format("Lambda to %s, created by DRPortal", name),
-                getBucket(), S3Constants.LAMBDA_VPC);
+                S3Constants.LAMBDA_VPC);
     }
 }
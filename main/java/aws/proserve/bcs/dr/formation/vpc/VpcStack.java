@@ -3,8 +3,14 @@
 
 package aws.proserve.bcs.dr.formation.vpc;
 
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.CfnTag;
 import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.ec2.CfnFlowLog;
+import software.amazon.awscdk.services.ec2.CfnTransitGateway;
+import software.amazon.awscdk.services.ec2.CfnTransitGatewayAttachment;
 import software.amazon.awscdk.services.ec2.EnableVpnGatewayOptions;
 import software.amazon.awscdk.services.ec2.FlowLogDestination;
 import software.amazon.awscdk.services.ec2.FlowLogOptions;
@@ -20,6 +26,7 @@ import software.amazon.awscdk.services.ec2.SubnetType;
 import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.ec2.VpcEndpoint;
 import software.amazon.awscdk.services.rds.CfnDBSubnetGroup;
+import software.amazon.awscdk.services.ssm.StringParameter;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -30,14 +37,17 @@ import java.util.stream.Collectors;
 
 @Singleton
 public class VpcStack extends Stack {
+    public static final String PARAM_TRANSIT_GATEWAY = "/drportal/vpc/transit-gateway-id";
     private static final String CIDR = "4.4.0.0/16";
+    private static final int DEFAULT_AGGREGATION_INTERVAL = 600;
 
     private final Vpc vpc;
     private final VpcEndpoint apiEndpoint;
     private final SecurityGroup securityGroup;
+    private final CfnTransitGateway transitGateway;
 
     @Inject
-    VpcStack(App app) {
+    VpcStack(App app, BucketStack bucketStack) {
         super(app, "DRPortal-Vpc");
 
         this.vpc = Vpc.Builder
@@ -62,11 +72,8 @@ public class VpcStack extends Stack {
                                 .subnetType(SubnetType.ISOLATED)
                                 .name("Isolated")
                                 .build()))
-                .flowLogs(Map.of("ToCloudWatchFlowLog", FlowLogOptions.builder()
-                        .trafficType(FlowLogTrafficType.ALL)
-                        .destination(FlowLogDestination.toCloudWatchLogs())
-                        .build()))
                 .build();
+        addFlowLog(bucketStack);
 
         final var subnets = vpc.getIsolatedSubnets().stream().map(ISubnet::getSubnetId).collect(Collectors.toList());
         CfnDBSubnetGroup.Builder
@@ -109,6 +116,80 @@ public class VpcStack extends Stack {
                                 .subnetType(SubnetType.PRIVATE)
                                 .build()))
                 .build());
+
+        this.transitGateway = isTransitGatewayEnabled() ? createTransitGateway() : null;
+    }
+
+    /**
+     * Sends flow logs to CloudWatch Logs by default. With {@code FLOW_LOG_DESTINATION=s3} they go to the flow log
+     * bucket as Parquet in hourly Hive partitions instead, which costs less and is not throttled at ingestion.
+     */
+    private void addFlowLog(BucketStack bucketStack) {
+        final var destination = System.getenv(Keys.FLOW_LOG_DESTINATION);
+        final var trafficTypeValue = System.getenv(Keys.FLOW_LOG_TRAFFIC_TYPE);
+        final var trafficType = trafficTypeValue == null
+                ? FlowLogTrafficType.ALL : FlowLogTrafficType.valueOf(trafficTypeValue);
+        final var intervalValue = System.getenv(Keys.FLOW_LOG_AGGREGATION_INTERVAL);
+        final var interval = intervalValue == null ? DEFAULT_AGGREGATION_INTERVAL : Integer.parseInt(intervalValue);
+
+        if ("none".equals(destination)) {
+            return;
+        }
+
+        if (isFlowLogToS3()) {
+            CfnFlowLog.Builder
+                    .create(this, "ToS3FlowLog")
+                    .resourceId(vpc.getVpcId())
+                    .resourceType("VPC")
+                    .trafficType(trafficType.name())
+                    .logDestinationType("s3")
+                    .logDestination(bucketStack.getFlowLogBucket().getBucketArn() + "/" + BucketStack.PREFIX_FLOW_LOG)
+                    .maxAggregationInterval(interval)
+                    .destinationOptions(Map.of(
+                            "FileFormat", "parquet",
+                            "HiveCompatiblePartitions", true,
+                            "PerHourPartition", true))
+                    .build();
+            return;
+        }
+
+        // name will be "DRPortal-Vpc/Common/ToCloudWatchFlowLog", do not modify.
+        final var flowLog = vpc.addFlowLog("ToCloudWatchFlowLog", FlowLogOptions.builder()
+                .trafficType(trafficType)
+                .destination(FlowLogDestination.toCloudWatchLogs())
+                .build());
+        ((CfnFlowLog) flowLog.getNode().getDefaultChild()).setMaxAggregationInterval(interval);
+    }
+
+    /**
+     * Creates a hub that project VPCs attach to, instead of peering with the common VPC one by one. The common
+     * VPC is attached here, and routes to a project VPC are added with its attachment. Attachments associate
+     * with and propagate to the default route table, so the hub routes between them without further steps.
+     */
+    private CfnTransitGateway createTransitGateway() {
+        final var gateway = CfnTransitGateway.Builder
+                .create(this, "TransitGateway")
+                .description("The drportal hub of project VPCs")
+                .autoAcceptSharedAttachments("enable")
+                .defaultRouteTableAssociation("enable")
+                .defaultRouteTablePropagation("enable")
+                .dnsSupport("enable")
+                .tags(List.of(CfnTag.builder().key("Name").value("DRPortal").build()))
+                .build();
+
+        CfnTransitGatewayAttachment.Builder
+                .create(this, "TransitGatewayAttachment")
+                .transitGatewayId(gateway.getRef())
+                .vpcId(vpc.getVpcId())
+                .subnetIds(vpc.getPrivateSubnets().stream().map(ISubnet::getSubnetId).collect(Collectors.toList()))
+                .build();
+
+        StringParameter.Builder
+                .create(this, "TransitGatewayId")
+                .parameterName(PARAM_TRANSIT_GATEWAY)
+                .stringValue(gateway.getRef())
+                .build();
+        return gateway;
     }
 
     public Vpc getVpc() {
@@ -123,6 +204,21 @@ public class VpcStack extends Stack {
         return securityGroup;
     }
 
+    /**
+     * @return the hub of project VPCs, or null if {@code TRANSIT_GATEWAY} is not {@code true}.
+     */
+    public CfnTransitGateway getTransitGateway() {
+        return transitGateway;
+    }
+
+    public static boolean isTransitGatewayEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.TRANSIT_GATEWAY));
+    }
+
+    public static boolean isFlowLogToS3() {
+        return "s3".equals(System.getenv(Keys.FLOW_LOG_DESTINATION));
+    }
+
     public static boolean isChina() {
         final var region = System.getenv("REGION");
         return region != null && region.startsWith("cn-");
@@ -3,6 +3,8 @@
 
 package aws.proserve.bcs.dr.formation.vpc;
 
+import aws.proserve.bcs.dr.formation.Keys;
+import aws.proserve.bcs.dr.formation.s3.BucketStack;
 import aws.proserve.bcs.formation.StepsStack;
 import software.amazon.awscdk.core.App;
 import software.amazon.awscdk.core.Duration;
@@ -10,7 +12,11 @@ import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.stepfunctions.Chain;
+import software.amazon.awscdk.services.stepfunctions.Choice;
+import software.amazon.awscdk.services.stepfunctions.Condition;
+import software.amazon.awscdk.services.stepfunctions.JsonPath;
 import software.amazon.awscdk.services.stepfunctions.Parallel;
+import software.amazon.awscdk.services.stepfunctions.ParallelProps;
 import software.amazon.awscdk.services.stepfunctions.Pass;
 import software.amazon.awscdk.services.stepfunctions.Result;
 import software.amazon.awscdk.services.stepfunctions.StateMachine;
@@ -24,12 +30,19 @@ import java.util.Map;
 @Singleton
 public class VpcStepsStack extends StepsStack {
 
+    private static final int DEFAULT_CONCURRENCY = 10;
+
     private final StateMachine replicateVpcMachine;
+    private final int concurrency;
 
     @Inject
-    VpcStepsStack(App app, VpcLambdaStack lambdaStack) {
+    VpcStepsStack(App app, BucketStack bucketStack, VpcDeployStack deployStack) {
         super(app, "DRPortal-Vpc-Steps");
-        mergeFunctionMap(lambdaStack.getFunctionMap());
+        mergeFunctionMap(deployStack.getAliasMap());
+
+        // bounded to stay below the EC2 API rate limits of the target region.
+        final var concurrencyValue = System.getenv(Keys.VPC_REPLICATION_CONCURRENCY);
+        this.concurrency = concurrencyValue == null ? DEFAULT_CONCURRENCY : Integer.parseInt(concurrencyValue);
 
         final var role = Role.Builder
                 .create(this, "VpcStepsRole")
@@ -43,7 +56,9 @@ public class VpcStepsStack extends StepsStack {
                 .stateMachineName("DRPVpcReplicateVpcMachine")
                 .role(role)
                 .timeout(Duration.minutes(15))
-                .definition(replicateVpc())
+                .definition(isFanOutEnabled()
+                        ? replicateVpcEach(bucketStack.getBucket().getBucketName())
+                        : replicateVpc(bucketStack.getBucket().getBucketName()))
                 .build();
     }
 
@@ -51,11 +66,39 @@ public class VpcStepsStack extends StepsStack {
         return replicateVpcMachine;
     }
 
+    /**
+     * The handlers replicating one resource per invocation, and listing and merging the resources, are not in the
+     * lambda bundle of every release, so the machine replicates each type in one invocation unless
+     * {@code VPC_RESOURCE_FAN_OUT} is {@code true}.
+     */
+    public static boolean isFanOutEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.VPC_RESOURCE_FAN_OUT));
+    }
+
+    /**
+     * Functions receive {@code claimCheck} and put a resource map larger than they can return in the bucket
+     * under its prefix, returning {@code {"bucket": ..., "key": ...}} in place of the map. Functions reading a
+     * map resolve such a reference before use, so only references travel between states of a large VPC.
+     * <p>
+     * Handlers of earlier lambda bundles neither put nor resolve references, so {@code claimCheck} is only passed
+     * with {@code VPC_CLAIM_CHECK}, or {@code VPC_RESOURCE_FAN_OUT} whose handlers always expect it.
+     */
+    public static boolean isClaimCheckEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.VPC_CLAIM_CHECK)) || isFanOutEnabled();
+    }
+
     /**
      * @return new target VPC id.
      */
-    private Chain replicateVpc() {
-        return Chain.start(f("ReplicateVpc", "$.target.vpcId"))
+    private Chain replicateVpc(String bucketName) {
+        final var routeTable = new HashMap<>(Input.routeTable);
+        if (isClaimCheckEnabled()) {
+            routeTable.put("claimCheck.$", "$[1][1].claimCheck");
+        }
+        final var endpoint = new HashMap<>(routeTable);
+        endpoint.put("routeTableMap.$", "$[5].routeTableMap");
+
+        final var replicate = Chain.start(f("ReplicateVpc", "$.target.vpcId"))
                 .next(new Parallel(this, "VpcResources").branch(
                         f("ReplicateDhcp"),
                         f("ReplicateSubnet", "$.subnetMap")
@@ -70,8 +113,119 @@ public class VpcStepsStack extends StepsStack {
                                 .create(this, "RouteTableHolder")
                                 .result(Result.fromObject(Map.of("routeTableMap", "")))
                                 .build()))
-                .next(f("ReplicateRouteTable", "$[5].routeTableMap", Input.routeTable))
-                .next(f("ReplicateEndpoint", Input.endpoint));
+                .next(f("ReplicateRouteTable", "$[5].routeTableMap", routeTable))
+                .next(f("ReplicateEndpoint", endpoint));
+        return isClaimCheckEnabled() ? Chain.start(claimCheck(bucketName)).next(replicate) : replicate;
+    }
+
+    /**
+     * Replicates subnets, security groups, network ACLs and route tables by one invocation each, with the claim
+     * check of {@link #isClaimCheckEnabled}.
+     * <p>
+     * Each step starts as soon as the resources it refers to are replicated. Route tables do not wait for NAT
+     * gateways, whose routes are added afterwards. Endpoints of both types are replicated in one invocation once
+     * the route tables are, as {@code ReplicateEndpoint} replicates every endpoint of the VPC.
+     * <p>
+     * {@code DiffVpc} compares the source resources with the fingerprints saved in {@code TABLE_VPC} by the last
+     * run towards the same region, and keeps only the changed subnets, security groups, network ACLs and route
+     * tables in {@code $.resources}. The target ids of unchanged ones come back in {@code $.resources.unchanged}.
+     * A new target VPC has no fingerprints, so everything is replicated and {@code unchanged} may lack a type.
+     *
+     * @return new target VPC id.
+     */
+    private Chain replicateVpcEach(String bucketName) {
+        final var routeResources = new Parallel(this, "RouteResources").branch(
+                f("ReplicateNatGateway", "$.natGatewayMap"),
+                forEach("ReplicateRouteTable", "routeTableIds", "routeTableId", "routeTableMap",
+                        "subnetMap", "egressGatewayMap", "internetGatewayMap"));
+
+        final var dependentResources = new Parallel(this, "DependentResources", ParallelProps.builder()
+                .resultPath("$.dependentResources")
+                .build()).branch(
+                forEach("ReplicateNetworkAcl", "networkAclIds", "networkAclId", null, "subnetMap"),
+                fDiscard("ReplicateSecurityGroupRule"),
+                routeResources
+                        .next(Pass.Builder
+                                .create(this, "CollectRouteResources")
+                                .parameters(Input.routeResources)
+                                .build())
+                        .next(fDiscard("ReplicateNatGatewayRoute"))
+                        .next(fDiscard("ReplicateEndpoint")));
+
+        final var baseResources = new Parallel(this, "BaseResources").branch(
+                forEach("ReplicateSubnet", "subnetIds", "subnetId", "subnetMap"),
+                forEach("ReplicateSecurityGroup", "securityGroupIds", "securityGroupId", "securityGroupMap"),
+                f("ReplicateEgressIgw"),
+                f("ReplicateIgw"));
+
+        return Chain.start(claimCheck(bucketName))
+                .next(f("ReplicateVpc", "$.target.vpcId"))
+                .next(f("ListVpcResources", "$.resources"))
+                .next(f("DiffVpc", "$.resources", Input.of("resources")))
+                .next(new Parallel(this, "VpcResources", ParallelProps.builder()
+                        .resultPath("$.vpcResources")
+                        .build()).branch(
+                        f("ReplicateDhcp"),
+                        baseResources
+                                .next(Pass.Builder
+                                        .create(this, "CollectBaseResources")
+                                        .parameters(Input.baseResources)
+                                        .build())
+                                .next(dependentResources)))
+                .next(fDiscard("SaveVpcFingerprints", Input.saveVpcFingerprints))
+                .next(Pass.Builder
+                        .create(this, "TargetVpcId")
+                        .inputPath("$.target.vpcId")
+                        .build());
+    }
+
+    private Pass claimCheck(String bucketName) {
+        return Pass.Builder
+                .create(this, "ClaimCheck")
+                .parameters(Map.of(
+                        "bucket", bucketName,
+                        "prefix.$", "States.Format('" + BucketStack.PREFIX_CLAIM_CHECK + "{}/', $$.Execution.Name)"))
+                .resultPath("$.claimCheck")
+                .build();
+    }
+
+    /**
+     * Replicates the resources listed at {@code $.resources.<idsKey>} by one invocation each, at most
+     * {@code VPC_REPLICATION_CONCURRENCY} at a time, and merges their results into {@code $.<mapKey>}, together
+     * with {@code $.resources.unchanged.<mapKey>} if {@code DiffVpc} found unchanged ones.
+     *
+     * @param mapKey the key of merged results, or null to discard them.
+     * @param keys   the keys of the state also passed to each invocation.
+     */
+    private Chain forEach(String label, String idsKey, String idKey, String mapKey, String... keys) {
+        final var parameters = Input.of(keys);
+        parameters.put(idKey + ".$", "$$.Map.Item.Value");
+
+        final var each = software.amazon.awscdk.services.stepfunctions.Map.Builder
+                .create(this, label + "Each")
+                .itemsPath("$.resources." + idsKey)
+                .maxConcurrency(concurrency)
+                .parameters(parameters)
+                .resultPath(mapKey == null ? JsonPath.DISCARD : "$." + mapKey)
+                .build();
+        each.iterator(f(label));
+
+        if (mapKey == null) {
+            return Chain.start(each);
+        }
+
+        final var unchanged = "$.resources.unchanged." + mapKey;
+        return Chain.start(each)
+                .next(new Choice(this, label + "HasUnchanged")
+                        .when(Condition.isPresent(unchanged),
+                                fTask("MergeResourceMaps", label + "Merge", "$", "$." + mapKey, Map.of(
+                                        "maps.$", "$." + mapKey,
+                                        "unchanged.$", unchanged,
+                                        "claimCheck.$", "$.claimCheck")))
+                        .otherwise(fTask("MergeResourceMaps", label + "MergeAll", "$", "$." + mapKey, Map.of(
+                                "maps.$", "$." + mapKey,
+                                "claimCheck.$", "$.claimCheck")))
+                        .afterwards());
     }
 
     private static class Input {
@@ -90,10 +244,57 @@ public class VpcStepsStack extends StepsStack {
                 "natGatewayMap.$", "$[1][1].natGatewayMap"
         );
 
-        private static final Map<String, Object> endpoint = new HashMap<>(routeTable);
+        /**
+         * Flattens the output of {@code BaseResources} for the steps depending on them.
+         */
+        private static final Map<String, Object> baseResources = Map.of(
+                "source.$", "$[0].source",
+                "target.$", "$[0].target",
+                "continuous.$", "$[0].continuous",
+                "claimCheck.$", "$[0].claimCheck",
+                "resources.$", "$[0].resources",
+                "subnetMap.$", "$[0].subnetMap",
+                "securityGroupMap.$", "$[1].securityGroupMap",
+                "egressGatewayMap.$", "$[2]",
+                "internetGatewayMap.$", "$[3]");
+
+        /**
+         * Flattens the output of {@code RouteResources} for adding routes to NAT gateways and replicating endpoints.
+         */
+        private static final Map<String, Object> routeResources = Map.of(
+                "source.$", "$[0].source",
+                "target.$", "$[0].target",
+                "continuous.$", "$[0].continuous",
+                "claimCheck.$", "$[0].claimCheck",
+                "subnetMap.$", "$[0].subnetMap",
+                "securityGroupMap.$", "$[0].securityGroupMap",
+                "natGatewayMap.$", "$[0].natGatewayMap",
+                "routeTableMap.$", "$[1].routeTableMap");
+
+        /**
+         * Saves the fingerprints of this run with the target ids of the replicated resources.
+         */
+        private static final Map<String, Object> saveVpcFingerprints = Map.of(
+                "source.$", "$.source",
+                "target.$", "$.target",
+                "claimCheck.$", "$.claimCheck",
+                "fingerprints.$", "$.resources.fingerprints",
+                "subnetMap.$", "$.vpcResources[1].subnetMap",
+                "securityGroupMap.$", "$.vpcResources[1].securityGroupMap",
+                "routeTableMap.$", "$.vpcResources[1].dependentResources[2].routeTableMap");
 
-        static {
-            endpoint.put("routeTableMap.$", "$[5].routeTableMap");
+        /**
+         * @return parameters passing the VPCs, {@code continuous}, {@code claimCheck} and {@code keys} of the state.
+         */
+        private static Map<String, Object> of(String... keys) {
+            final var parameters = new HashMap<String, Object>();
+            for (var key : List.of("source", "target", "continuous", "claimCheck")) {
+                parameters.put(key + ".$", "$." + key);
+            }
+            for (var key : keys) {
+                parameters.put(key + ".$", "$." + key);
+            }
+            return parameters;
         }
     }
 }
@@ -0,0 +1,116 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.formation.vpc;
+
+import aws.proserve.bcs.dr.formation.Keys;
+import software.amazon.awscdk.core.App;
+import software.amazon.awscdk.core.Aws;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.core.Environment;
+import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.core.StackProps;
+import software.amazon.awscdk.services.events.EventBus;
+import software.amazon.awscdk.services.events.EventPattern;
+import software.amazon.awscdk.services.events.Rule;
+import software.amazon.awscdk.services.events.targets.LambdaFunction;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replicates a changed resource of a continuous VPC as soon as CloudTrail records the EC2 API call, instead of
+ * waiting for the next run of the replicate VPC machine. Each region in {@code WATCH_REGIONS} gets a stack
+ * forwarding the calls to the default event bus of {@code REGION}, where {@code ReplicateVpcChange} replicates
+ * the single resource through the function of its type. CloudTrail must record management events there.
+ * <p>
+ * Created only if {@code VPC_WATCH} is {@code true}, which needs the per-resource functions of
+ * {@code VPC_RESOURCE_FAN_OUT}.
+ */
+@Singleton
+public class VpcWatchStack extends Stack {
+    /**
+     * Labels of the functions {@code ReplicateVpcChange} invokes.
+     */
+    static final List<String> REPLICATE_FUNCTIONS = List.of(
+            "ReplicateSubnet", "ReplicateSecurityGroup", "ReplicateSecurityGroupRule", "ReplicateNetworkAcl",
+            "ReplicateRouteTable", "ReplicateNatGatewayRoute", "ReplicateNatGateway", "ReplicateEndpoint");
+
+    private static final List<String> EVENT_NAMES = List.of(
+            "CreateSubnet", "DeleteSubnet", "ModifySubnetAttribute",
+            "CreateSecurityGroup", "DeleteSecurityGroup",
+            "AuthorizeSecurityGroupIngress", "AuthorizeSecurityGroupEgress",
+            "RevokeSecurityGroupIngress", "RevokeSecurityGroupEgress",
+            "CreateNetworkAcl", "DeleteNetworkAcl",
+            "CreateNetworkAclEntry", "ReplaceNetworkAclEntry", "DeleteNetworkAclEntry",
+            "ReplaceNetworkAclAssociation",
+            "CreateRouteTable", "DeleteRouteTable", "AssociateRouteTable", "DisassociateRouteTable",
+            "CreateRoute", "ReplaceRoute", "DeleteRoute",
+            "CreateNatGateway", "DeleteNatGateway",
+            "CreateVpcEndpoint", "ModifyVpcEndpoint", "DeleteVpcEndpoints");
+
+    @Inject
+    VpcWatchStack(App app, VpcLambdaStack lambdaStack) {
+        super(app, "DRPortal-Vpc-Watch");
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        final var region = System.getenv("REGION");
+        final var function = lambdaStack.getFunctionMap().get("ReplicateVpcChange");
+
+        Rule.Builder
+                .create(this, "VpcChangeRule")
+                .ruleName("DRPVpcChangeRule")
+                .description("Replicates changes of continuous VPCs, created by DRPortal")
+                .eventPattern(ec2Calls())
+                .targets(List.of(LambdaFunction.Builder
+                        .create(function)
+                        .retryAttempts(2)
+                        .maxEventAge(Duration.hours(1))
+                        .build()))
+                .build();
+
+        final var watchRegions = System.getenv(Keys.WATCH_REGIONS);
+        if (region == null || watchRegions == null) {
+            return;
+        }
+
+        for (var watchRegion : watchRegions.split(",")) {
+            watchRegion = watchRegion.trim();
+            if (watchRegion.isEmpty() || watchRegion.equals(region)) {
+                continue;
+            }
+
+            final var forwarder = new Stack(app, "DRPortal-Vpc-Watch-" + watchRegion, StackProps.builder()
+                    .env(Environment.builder().region(watchRegion).build())
+                    .build());
+            final var portalBus = EventBus.fromEventBusArn(forwarder, "PortalBus", String.format(
+                    "arn:%s:events:%s:%s:event-bus/default", Aws.PARTITION, region, Aws.ACCOUNT_ID));
+            Rule.Builder
+                    .create(forwarder, "ForwardRule")
+                    .ruleName("DRPVpcChangeForwardRule")
+                    .description("Forwards EC2 API calls to the portal region, created by DRPortal")
+                    .eventPattern(ec2Calls())
+                    .targets(List.of(new software.amazon.awscdk.services.events.targets.EventBus(portalBus)))
+                    .build();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getenv(Keys.VPC_WATCH)) && VpcStepsStack.isFanOutEnabled();
+    }
+
+    private static EventPattern ec2Calls() {
+        return EventPattern.builder()
+                .source(List.of("aws.ec2"))
+                .detailType(List.of("AWS API Call via CloudTrail"))
+                .detail(Map.of(
+                        "eventSource", List.of("ec2.amazonaws.com"),
+                        "eventName", EVENT_NAMES))
+                .build();
+    }
+}